@@ -13,10 +13,13 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import graph.ConcurrentStringGraph;
 import graph.GraphReadWrite;
+import graph.ParallelGraphWriter;
 import graph.StringEdge;
 import graph.StringGraph;
 import linguistics.PythonNLP_RestServiceInterface;
@@ -860,7 +863,9 @@ public class KnowledgeBaseBuilder {
 		SynchronizedSeriarizableHashMap<String, Boolean> exploredConcepts = new SynchronizedSeriarizableHashMap<>("exploredConcepts.dat", 10);
 		ArrayList<String> concepts = new ArrayList<String>(kb.getVertexSet());
 		ParallelConsumer<String> pc = new ParallelConsumer<>(NUMBER_OF_THREADS);
-		ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+		// shared by the threads without external locking
+		ConcurrentStringGraph sharedKB = new ConcurrentStringGraph(kb);
+		AtomicBoolean backupRunning = new AtomicBoolean(false);
 		pc.parallelForEach(concepts, concept -> {
 			// ignore concepts that are verb phrase
 			if (!exploredConcepts.containsKey(concept) && // that have been explored before
@@ -881,17 +886,11 @@ public class KnowledgeBaseBuilder {
 						Set<StringEdge> isa_source;
 						// isa_in = X,isa,concept (concept is superclass of X)
 						Set<StringEdge> isa_target;
-						Set<StringEdge> edgesOf;
-						lock.readLock().lock();
-						{
-							isa_source = kb.outgoingEdgesOf(concept, "isa"); // concept ISA ?
-							isa_target = kb.incomingEdgesOf(concept, "isa"); // ? ISA concept
-							edgesOf = kb.edgesOf(concept);
-						}
-						lock.readLock().unlock();
+						isa_source = sharedKB.outgoingEdgesOf(concept, "isa"); // concept ISA ?
+						isa_target = sharedKB.incomingEdgesOf(concept, "isa"); // ? ISA concept
 						int num_isa_source = isa_source.size();
 						int num_isa_target = isa_target.size();
-						int num_edges = edgesOf.size();
+						int num_edges = sharedKB.degreeOf(concept);
 
 						// all relations that are not ISA
 						int remaining = num_edges - num_isa_target - num_isa_source;
@@ -930,24 +929,18 @@ public class KnowledgeBaseBuilder {
 						}
 
 						if (!localEdges.isEmpty()) {
-							lock.writeLock().lock();
-							{
-								kb.addEdges(localEdges);
-							}
-							lock.writeLock().unlock();
+							sharedKB.addEdges(localEdges);
 						}
 
-						if (Math.random() < (1.0 / 10.0)) {
-							try {
-								{
-									lock.readLock().lock();
-									GraphReadWrite.writeCSV("kb_backup", kb);
-									lock.readLock().unlock();
-								}
-								System.err.println("kb backed up");
-							} catch (IOException e) {
-								e.printStackTrace();
-							}
+						// backup in the background, skipped while the previous one is being written
+						if (Math.random() < (1.0 / 10.0) && backupRunning.compareAndSet(false, true)) {
+							ParallelGraphWriter.writeCSVAsync("kb_backup", sharedKB.edgeSet(), false).whenComplete((result, e) -> {
+								if (e != null)
+									e.printStackTrace();
+								else
+									System.err.println("kb backed up");
+								backupRunning.set(false);
+							});
 						}
 
 					}
@@ -956,6 +949,7 @@ public class KnowledgeBaseBuilder {
 			}
 		});
 		pc.shutdown();
+		kb.addEdges(sharedKB.edgeSet());
 		exploredConcepts.save();
 	}
 
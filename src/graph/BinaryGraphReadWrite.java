@@ -0,0 +1,324 @@
+package graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import structures.ObjectIndex;
+import structures.StringInterner;
+
+/**
+ * Reads and writes graphs in a compact binary format (extension sgb) meant to be loaded much faster than the text formats of GraphReadWrite. All the values
+ * are little-endian ints:
+ * <ul>
+ * <li>header: magic, version, flags, number of vertices, number of labels, number of edges</li>
+ * <li>vertex and label string tables, each made of the offsets (count+1) of the strings in the following UTF-8 bytes (padded to a multiple of 4)</li>
+ * <li>edges as three columns (sources, labels, targets) of string table ids, sorted by source, label and target</li>
+ * <li>optionally (FLAG_ADJACENCY) the CSR adjacency of FrozenStringGraph: outgoing offsets, incoming offsets, incoming labels and incoming sources</li>
+ * </ul>
+ * Vertices and labels are sorted lexicographically, so the edge columns are also the outgoing CSR adjacency. Files are read by memory-mapping each section.
+ *
+ * @author jcfgonc@gmail.com
+ */
+public class BinaryGraphReadWrite {
+	public static final String EXTENSION = "sgb";
+	private static final int MAGIC = 0x31424753; // "SGB1"
+	private static final int VERSION = 1;
+	private static final int FLAG_ADJACENCY = 1;
+	private static final int HEADER_SIZE = 6 * 4;
+	// maximum number of bytes mapped at once
+	private static final int MAXIMUM_MAPPING = 1 << 28;
+	private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Contents of a file. The adjacency arrays are null if not in the file or not requested.
+	 */
+	private static class Contents {
+		String[] vertices;
+		String[] labels;
+		int[] sources;
+		int[] edgeLabels;
+		int[] targets;
+		int[] outOffsets;
+		int[] inOffsets;
+		int[] inLabels;
+		int[] inSources;
+	}
+
+	public static void write(String filename, StringGraph graph, boolean withAdjacency) throws IOException {
+		write(filename, graph.freeze(), withAdjacency);
+	}
+
+	/**
+	 * Writes the graph to the given file. If withAdjacency is true the incoming CSR adjacency is also stored (8 bytes more per edge), saving its construction
+	 * when the file is read with readFrozen().
+	 *
+	 * @param filename
+	 * @param graph
+	 * @param withAdjacency
+	 * @throws IOException
+	 */
+	public static void write(String filename, FrozenStringGraph graph, boolean withAdjacency) throws IOException {
+		int numVertices = graph.numberOfVertices();
+		int numLabels = graph.numberOfLabels();
+		int numEdges = graph.numberOfEdges();
+		int[] outOffsets = graph.getOutOffsets();
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(withAdjacency ? FLAG_ADJACENCY : 0);
+			buffer.putInt(numVertices);
+			buffer.putInt(numLabels);
+			buffer.putInt(numEdges);
+
+			String[] vertices = new String[numVertices];
+			for (int v = 0; v < numVertices; v++) {
+				vertices[v] = graph.getVertexName(v);
+			}
+			writeStrings(channel, buffer, vertices);
+			String[] labels = new String[numLabels];
+			for (int l = 0; l < numLabels; l++) {
+				labels[l] = graph.getLabelName(l);
+			}
+			writeStrings(channel, buffer, labels);
+
+			for (int v = 0; v < numVertices; v++) {
+				for (int i = outOffsets[v]; i < outOffsets[v + 1]; i++) {
+					putInt(channel, buffer, v);
+				}
+			}
+			writeInts(channel, buffer, graph.getOutLabels());
+			writeInts(channel, buffer, graph.getOutTargets());
+			if (withAdjacency) {
+				writeInts(channel, buffer, outOffsets);
+				writeInts(channel, buffer, graph.getInOffsets());
+				writeInts(channel, buffer, graph.getInLabels());
+				writeInts(channel, buffer, graph.getInSources());
+			}
+			flush(channel, buffer);
+		}
+	}
+
+	private static void writeStrings(FileChannel channel, ByteBuffer buffer, String[] strings) throws IOException {
+		byte[][] encoded = new byte[strings.length][];
+		long length = 0;
+		putInt(channel, buffer, 0);
+		for (int i = 0; i < strings.length; i++) {
+			encoded[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+			length += encoded[i].length;
+			if (length > Integer.MAX_VALUE)
+				throw new IOException("string table larger than 2 GB");
+			putInt(channel, buffer, (int) length);
+		}
+		for (byte[] bytes : encoded) {
+			int from = 0;
+			while (from < bytes.length) {
+				if (!buffer.hasRemaining())
+					flush(channel, buffer);
+				int amount = Math.min(buffer.remaining(), bytes.length - from);
+				buffer.put(bytes, from, amount);
+				from += amount;
+			}
+		}
+		for (long i = length; (i & 3) != 0; i++) {
+			if (!buffer.hasRemaining())
+				flush(channel, buffer);
+			buffer.put((byte) 0);
+		}
+	}
+
+	private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+		int from = 0;
+		while (from < values.length) {
+			if (buffer.remaining() < 4)
+				flush(channel, buffer);
+			int amount = Math.min(buffer.remaining() / 4, values.length - from);
+			buffer.asIntBuffer().put(values, from, amount);
+			buffer.position(buffer.position() + amount * 4);
+			from += amount;
+		}
+	}
+
+	private static void putInt(FileChannel channel, ByteBuffer buffer, int value) throws IOException {
+		if (buffer.remaining() < 4)
+			flush(channel, buffer);
+		buffer.putInt(value);
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private static Contents readContents(String filename, boolean readAdjacency) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE)
+				throw new IOException("not a " + EXTENSION + " file: " + filename);
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getInt() != MAGIC)
+				throw new IOException("not a " + EXTENSION + " file: " + filename);
+			int version = header.getInt();
+			if (version != VERSION)
+				throw new IOException("unsupported " + EXTENSION + " version " + version + ": " + filename);
+			int flags = header.getInt();
+			int numVertices = header.getInt();
+			int numLabels = header.getInt();
+			int numEdges = header.getInt();
+
+			long[] position = { HEADER_SIZE };
+			Contents contents = new Contents();
+			contents.vertices = readStrings(channel, position, numVertices);
+			contents.labels = readStrings(channel, position, numLabels);
+			contents.sources = readInts(channel, position, numEdges);
+			contents.edgeLabels = readInts(channel, position, numEdges);
+			contents.targets = readInts(channel, position, numEdges);
+			if (readAdjacency && (flags & FLAG_ADJACENCY) != 0) {
+				contents.outOffsets = readInts(channel, position, numVertices + 1);
+				contents.inOffsets = readInts(channel, position, numVertices + 1);
+				contents.inLabels = readInts(channel, position, numEdges);
+				contents.inSources = readInts(channel, position, numEdges);
+			}
+			return contents;
+		}
+	}
+
+	/**
+	 * maps the given number of ints at the position (advanced past them) and copies them to an array
+	 */
+	private static int[] readInts(FileChannel channel, long[] position, int count) throws IOException {
+		int[] values = new int[count];
+		int from = 0;
+		while (from < count) {
+			int amount = Math.min(count - from, MAXIMUM_MAPPING / 4);
+			MappedByteBuffer mapped = map(channel, position[0], amount * 4L);
+			mapped.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(values, from, amount);
+			position[0] += amount * 4L;
+			from += amount;
+		}
+		return values;
+	}
+
+	private static byte[] readBytes(FileChannel channel, long[] position, int count) throws IOException {
+		byte[] values = new byte[count];
+		int from = 0;
+		while (from < count) {
+			int amount = Math.min(count - from, MAXIMUM_MAPPING);
+			map(channel, position[0], amount).get(values, from, amount);
+			position[0] += amount;
+			from += amount;
+		}
+		return values;
+	}
+
+	private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+		if (position + size > channel.size())
+			throw new IOException("truncated " + EXTENSION + " file");
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+	}
+
+	private static String[] readStrings(FileChannel channel, long[] position, int count) throws IOException {
+		int[] offsets = readInts(channel, position, count + 1);
+		int length = offsets[count];
+		byte[] bytes = readBytes(channel, position, length);
+		position[0] += (4 - (length & 3)) & 3;
+		String[] strings = new String[count];
+		IntStream.range(0, count).parallel().forEach(i -> {
+			strings[i] = new String(bytes, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+		});
+		return strings;
+	}
+
+	private static void intern(String[] strings, StringInterner interner) {
+		for (int i = 0; i < strings.length; i++) {
+			strings[i] = interner.intern(strings[i]);
+		}
+	}
+
+	/**
+	 * Reads the edges of the given file into the graph.
+	 *
+	 * @param filename
+	 * @param graph
+	 * @return
+	 * @throws IOException
+	 */
+	public static StringGraph read(String filename, StringGraph graph) throws IOException {
+		Contents c = readContents(filename, false);
+		intern(c.vertices, graph.getInterner());
+		intern(c.labels, graph.getInterner());
+		StringEdge[] edges = new StringEdge[c.sources.length];
+		IntStream.range(0, edges.length).parallel().forEach(i -> {
+			edges[i] = new StringEdge(c.vertices[c.sources[i]], c.vertices[c.targets[i]], c.labels[c.edgeLabels[i]]);
+		});
+		graph.addEdges(Arrays.asList(edges), true);
+		return graph;
+	}
+
+	public static StringGraph read(String filename) throws IOException {
+		return read(filename, new StringGraph());
+	}
+
+	/**
+	 * Reads the given file as a FrozenStringGraph, using the stored adjacency if the file has it.
+	 *
+	 * @param filename
+	 * @return
+	 * @throws IOException
+	 */
+	public static FrozenStringGraph readFrozen(String filename) throws IOException {
+		Contents c = readContents(filename, true);
+		int numVertices = c.vertices.length;
+		if (c.outOffsets == null) {
+			// edges are sorted by source
+			c.outOffsets = new int[numVertices + 1];
+			for (int source : c.sources) {
+				c.outOffsets[source + 1]++;
+			}
+			for (int v = 0; v < numVertices; v++) {
+				c.outOffsets[v + 1] += c.outOffsets[v];
+			}
+			c.inOffsets = new int[numVertices + 1];
+			c.inLabels = new int[c.sources.length];
+			c.inSources = new int[c.sources.length];
+			FrozenStringGraph.buildCSR(numVertices, c.targets, c.edgeLabels, c.sources, c.inOffsets, c.inLabels, c.inSources);
+		}
+		return new FrozenStringGraph(c.vertices, c.labels, c.outOffsets, c.edgeLabels, c.targets, c.inOffsets, c.inLabels, c.inSources);
+	}
+
+	/**
+	 * Reads the edges of the given file into the integer graph, adding the vertices and relations to the given indices (as GraphReadWrite.readCSV()).
+	 *
+	 * @param filename
+	 * @param graph
+	 * @param vertexLabels
+	 * @param relationLabels
+	 * @throws IOException
+	 */
+	public static void read(String filename, IntDirectedMultiGraph graph, ObjectIndex<String> vertexLabels, ObjectIndex<String> relationLabels) throws IOException {
+		Contents c = readContents(filename, false);
+		// file ids to index ids
+		int[] vertexIds = new int[c.vertices.length];
+		for (int v = 0; v < vertexIds.length; v++) {
+			vertexIds[v] = vertexLabels.addObject(c.vertices[v]);
+		}
+		int[] labelIds = new int[c.labels.length];
+		for (int l = 0; l < labelIds.length; l++) {
+			labelIds[l] = relationLabels.addObject(c.labels[l]);
+		}
+		for (int i = 0; i < c.sources.length; i++) {
+			graph.addEdge(vertexIds[c.sources[i]], vertexIds[c.targets[i]], labelIds[c.edgeLabels[i]]);
+		}
+	}
+
+}
@@ -0,0 +1,476 @@
+package graph;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A thread-safe version of the StringGraph, meant to be shared (without external locking) by multiple threads. Edge addition/removal is atomic and every
+ * per-vertex query returns a consistent (SAFE, local copy) snapshot of that vertex's edges. The vertices are protected by a fixed number of striped read/write
+ * locks, so threads working on different vertices rarely contend. Whole-graph queries (edgeSet(), getVertexSet()) are weakly consistent.
+ *
+ * @author jcfgonc@gmail.com
+ */
+public class ConcurrentStringGraph {
+	private static final int DEFAULT_NUMBER_OF_STRIPES = 256;
+	private static final float DEFAULT_LOAD_FACTOR = 0.5f;
+	private static final int DEFAULT_INNER_SIZE = 4;
+
+	/**
+	 * edges touching a vertex, indexed by relation. Guarded by the vertex's stripe lock.
+	 */
+	private static class VertexEdges {
+		private final HashMap<String, HashSet<StringEdge>> incoming = new HashMap<>(DEFAULT_INNER_SIZE, DEFAULT_LOAD_FACTOR);
+		private final HashMap<String, HashSet<StringEdge>> outgoing = new HashMap<>(DEFAULT_INNER_SIZE, DEFAULT_LOAD_FACTOR);
+		private int inDegree;
+		private int outDegree;
+
+		private boolean isEmpty() {
+			return inDegree == 0 && outDegree == 0;
+		}
+	}
+
+	private final Set<StringEdge> edgeSet;
+	private final ConcurrentHashMap<String, VertexEdges> vertexEdges;
+	private final ConcurrentHashMap<String, Set<StringEdge>> labelEdges;
+	private final ReentrantReadWriteLock[] stripes;
+
+	public ConcurrentStringGraph(int numEdges, int numVertices, int numberOfStripes) {
+		edgeSet = ConcurrentHashMap.newKeySet(numEdges);
+		vertexEdges = new ConcurrentHashMap<>(numVertices);
+		labelEdges = new ConcurrentHashMap<>();
+		stripes = new ReentrantReadWriteLock[numberOfStripes];
+		for (int i = 0; i < numberOfStripes; i++) {
+			stripes[i] = new ReentrantReadWriteLock();
+		}
+	}
+
+	public ConcurrentStringGraph() {
+		this(16, 16, DEFAULT_NUMBER_OF_STRIPES);
+	}
+
+	public ConcurrentStringGraph(StringGraph graph) {
+		this(graph.numberOfEdges(), graph.numberOfVertices(), DEFAULT_NUMBER_OF_STRIPES);
+		addEdges(graph.edgeSet());
+	}
+
+	private int stripeOf(String vertex) {
+		int h = vertex.hashCode();
+		h ^= h >>> 16;
+		return (h & 0x7fffffff) % stripes.length;
+	}
+
+	/**
+	 * write locks the stripes of both vertices, always in the same order to prevent deadlocks
+	 */
+	private void lockPair(int s0, int s1) {
+		if (s0 == s1) {
+			stripes[s0].writeLock().lock();
+		} else {
+			stripes[Math.min(s0, s1)].writeLock().lock();
+			stripes[Math.max(s0, s1)].writeLock().lock();
+		}
+	}
+
+	private void unlockPair(int s0, int s1) {
+		stripes[s0].writeLock().unlock();
+		if (s0 != s1) {
+			stripes[s1].writeLock().unlock();
+		}
+	}
+
+	/**
+	 * adds a the given labeled edge between two vertices, returning true if successfully added it
+	 *
+	 * @param source
+	 * @param target
+	 * @param label
+	 * @return
+	 */
+	public boolean addEdge(String source, String target, String label) {
+		return addEdge(new StringEdge(source, target, label));
+	}
+
+	/**
+	 * adds the given edge, returning true if successfully added it. Follows the same rules as StringGraph.addEdge().
+	 *
+	 * @param edge
+	 * @return
+	 */
+	public boolean addEdge(StringEdge edge) {
+		String source = edge.getSource();
+		String target = edge.getTarget();
+		String label = edge.getLabel();
+
+		if (source.equals(target)) {
+			return false;
+		}
+
+		if (source.isEmpty() || target.isEmpty()) {
+			throw new RuntimeException(String.format("INVALID SOURCE||TARGET: %s,%s,%s\n", source, label, target));
+		}
+
+		if (label.isEmpty()) {
+			throw new RuntimeException(String.format("EMPTY RELATION: %s,%s,%s\n", source, label, target));
+		}
+
+		insertEdge(edge);
+
+		if (label.equals("synonym") || label.equals("antonym")) {
+			insertEdge(edge.reverse());
+		}
+
+		return true;
+	}
+
+	private boolean insertEdge(StringEdge edge) {
+		String source = edge.getSource();
+		String target = edge.getTarget();
+		int s0 = stripeOf(source);
+		int s1 = stripeOf(target);
+		lockPair(s0, s1);
+		try {
+			if (!edgeSet.add(edge))
+				return false;
+			VertexEdges out = vertexEdges.computeIfAbsent(source, v -> new VertexEdges());
+			addToSet(out.outgoing, edge.getLabel(), edge);
+			out.outDegree++;
+			VertexEdges in = vertexEdges.computeIfAbsent(target, v -> new VertexEdges());
+			addToSet(in.incoming, edge.getLabel(), edge);
+			in.inDegree++;
+			labelEdges.compute(edge.getLabel(), (label, edges) -> {
+				if (edges == null)
+					edges = ConcurrentHashMap.newKeySet();
+				edges.add(edge);
+				return edges;
+			});
+			return true;
+		} finally {
+			unlockPair(s0, s1);
+		}
+	}
+
+	public void addEdges(Collection<StringEdge> edges) {
+		for (StringEdge edge : edges) {
+			addEdge(edge);
+		}
+	}
+
+	/**
+	 * removes the given edge, returning false if it did not exist in the graph
+	 *
+	 * @param edge
+	 * @return
+	 */
+	public boolean removeEdge(StringEdge edge) {
+		String source = edge.getSource();
+		String target = edge.getTarget();
+		int s0 = stripeOf(source);
+		int s1 = stripeOf(target);
+		lockPair(s0, s1);
+		try {
+			if (!edgeSet.remove(edge))
+				return false;
+			VertexEdges out = vertexEdges.get(source);
+			removeFromSet(out.outgoing, edge.getLabel(), edge);
+			out.outDegree--;
+			if (out.isEmpty())
+				vertexEdges.remove(source);
+			VertexEdges in = vertexEdges.get(target);
+			removeFromSet(in.incoming, edge.getLabel(), edge);
+			in.inDegree--;
+			if (in.isEmpty())
+				vertexEdges.remove(target);
+			labelEdges.computeIfPresent(edge.getLabel(), (label, edges) -> {
+				edges.remove(edge);
+				return edges.isEmpty() ? null : edges;
+			});
+			return true;
+		} finally {
+			unlockPair(s0, s1);
+		}
+	}
+
+	public boolean removeEdge(String source, String target, String label) {
+		return removeEdge(new StringEdge(source, target, label));
+	}
+
+	public void removeEdges(Collection<StringEdge> toRemove) {
+		for (StringEdge edge : toRemove) {
+			removeEdge(edge);
+		}
+	}
+
+	/**
+	 * Removes the given vertex and its touching edges. Each edge is removed atomically, the vertex as a whole is not: edges concurrently added to the vertex
+	 * may survive.
+	 *
+	 * @param vertex
+	 */
+	public void removeVertex(String vertex) {
+		removeEdges(edgesOf(vertex));
+	}
+
+	private static void addToSet(HashMap<String, HashSet<StringEdge>> map, String label, StringEdge edge) {
+		HashSet<StringEdge> set = map.get(label);
+		if (set == null) {
+			set = new HashSet<>(DEFAULT_INNER_SIZE, DEFAULT_LOAD_FACTOR);
+			map.put(label, set);
+		}
+		set.add(edge);
+	}
+
+	private static void removeFromSet(HashMap<String, HashSet<StringEdge>> map, String label, StringEdge edge) {
+		HashSet<StringEdge> set = map.get(label);
+		if (set == null)
+			return;
+		set.remove(edge);
+		if (set.isEmpty())
+			map.remove(label);
+	}
+
+	private static void copyAll(HashMap<String, HashSet<StringEdge>> map, HashSet<StringEdge> copy) {
+		for (HashSet<StringEdge> set : map.values()) {
+			copy.addAll(set);
+		}
+	}
+
+	private static void copyLabel(HashMap<String, HashSet<StringEdge>> map, String label, HashSet<StringEdge> copy) {
+		HashSet<StringEdge> set = map.get(label);
+		if (set != null)
+			copy.addAll(set);
+	}
+
+	/**
+	 * SAFE, returns both incoming and outgoing edges from the given vertex
+	 *
+	 * @param vertex
+	 * @return
+	 */
+	public Set<StringEdge> edgesOf(String vertex) {
+		ReentrantReadWriteLock lock = stripes[stripeOf(vertex)];
+		lock.readLock().lock();
+		try {
+			VertexEdges ve = vertexEdges.get(vertex);
+			if (ve == null)
+				return new HashSet<>(0);
+			HashSet<StringEdge> copy = new HashSet<>((ve.inDegree + ve.outDegree) * 2);
+			copyAll(ve.incoming, copy);
+			copyAll(ve.outgoing, copy);
+			return copy;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * SAFE, returns the edges with the target as the given vertex
+	 *
+	 * @param vertex
+	 * @return
+	 */
+	public Set<StringEdge> incomingEdgesOf(String vertex) {
+		ReentrantReadWriteLock lock = stripes[stripeOf(vertex)];
+		lock.readLock().lock();
+		try {
+			VertexEdges ve = vertexEdges.get(vertex);
+			if (ve == null)
+				return new HashSet<>(0);
+			HashSet<StringEdge> copy = new HashSet<>(ve.inDegree * 2);
+			copyAll(ve.incoming, copy);
+			return copy;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * SAFE, returns the edges with the target as the given vertex and the given relation
+	 *
+	 * @param vertex
+	 * @param filter
+	 * @return
+	 */
+	public Set<StringEdge> incomingEdgesOf(String vertex, String filter) {
+		ReentrantReadWriteLock lock = stripes[stripeOf(vertex)];
+		lock.readLock().lock();
+		try {
+			HashSet<StringEdge> copy = new HashSet<>();
+			VertexEdges ve = vertexEdges.get(vertex);
+			if (ve != null)
+				copyLabel(ve.incoming, filter, copy);
+			return copy;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * SAFE, returns the edges with the source as the given vertex
+	 *
+	 * @param vertex
+	 * @return
+	 */
+	public Set<StringEdge> outgoingEdgesOf(String vertex) {
+		ReentrantReadWriteLock lock = stripes[stripeOf(vertex)];
+		lock.readLock().lock();
+		try {
+			VertexEdges ve = vertexEdges.get(vertex);
+			if (ve == null)
+				return new HashSet<>(0);
+			HashSet<StringEdge> copy = new HashSet<>(ve.outDegree * 2);
+			copyAll(ve.outgoing, copy);
+			return copy;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * SAFE, returns the edges with the source as the given vertex and the given relation
+	 *
+	 * @param vertex
+	 * @param filter
+	 * @return
+	 */
+	public Set<StringEdge> outgoingEdgesOf(String vertex, String filter) {
+		ReentrantReadWriteLock lock = stripes[stripeOf(vertex)];
+		lock.readLock().lock();
+		try {
+			HashSet<StringEdge> copy = new HashSet<>();
+			VertexEdges ve = vertexEdges.get(vertex);
+			if (ve != null)
+				copyLabel(ve.outgoing, filter, copy);
+			return copy;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public int inDegreeOf(String vertex) {
+		ReentrantReadWriteLock lock = stripes[stripeOf(vertex)];
+		lock.readLock().lock();
+		try {
+			VertexEdges ve = vertexEdges.get(vertex);
+			return ve == null ? 0 : ve.inDegree;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public int outDegreeOf(String vertex) {
+		ReentrantReadWriteLock lock = stripes[stripeOf(vertex)];
+		lock.readLock().lock();
+		try {
+			VertexEdges ve = vertexEdges.get(vertex);
+			return ve == null ? 0 : ve.outDegree;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public int degreeOf(String vertex) {
+		ReentrantReadWriteLock lock = stripes[stripeOf(vertex)];
+		lock.readLock().lock();
+		try {
+			VertexEdges ve = vertexEdges.get(vertex);
+			return ve == null ? 0 : ve.inDegree + ve.outDegree;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public boolean containsEdge(StringEdge edge) {
+		return edgeSet.contains(edge);
+	}
+
+	public boolean containsEdge(String source, String target, String label) {
+		return containsEdge(new StringEdge(source, target, label));
+	}
+
+	public boolean containsVertex(String vertex) {
+		return vertexEdges.containsKey(vertex);
+	}
+
+	public int numberOfEdges() {
+		return edgeSet.size();
+	}
+
+	public int numberOfEdges(String label) {
+		Set<StringEdge> edges = labelEdges.get(label);
+		return edges == null ? 0 : edges.size();
+	}
+
+	public int numberOfVertices() {
+		return vertexEdges.size();
+	}
+
+	public boolean isEmpty() {
+		return edgeSet.isEmpty();
+	}
+
+	/**
+	 * SAFE, weakly consistent local copy of the edges of this graph
+	 *
+	 * @return
+	 */
+	public Set<StringEdge> edgeSet() {
+		return new HashSet<>(edgeSet);
+	}
+
+	/**
+	 * SAFE, weakly consistent local copy of the edges with the given relation
+	 *
+	 * @param label
+	 * @return
+	 */
+	public Set<StringEdge> edgeSet(String label) {
+		Set<StringEdge> edges = labelEdges.get(label);
+		if (edges == null)
+			return new HashSet<>(0);
+		return new HashSet<>(edges);
+	}
+
+	/**
+	 * SAFE, weakly consistent local copy of the vertices of this graph
+	 *
+	 * @return
+	 */
+	public Set<String> getVertexSet() {
+		return new HashSet<>(vertexEdges.keySet());
+	}
+
+	/**
+	 * SAFE, weakly consistent local copy of the relations used in this graph
+	 *
+	 * @return
+	 */
+	public HashSet<String> getEdgeLabelSet() {
+		return new HashSet<>(labelEdges.keySet());
+	}
+
+	/**
+	 * Returns a (non thread-safe) StringGraph with a weakly consistent copy of the edges of this graph.
+	 *
+	 * @return
+	 */
+	public StringGraph toStringGraph() {
+		return new StringGraph(edgeSet());
+	}
+
+	public void showStructureSizes() {
+		System.out.println("edgeSet (number of edges): " + edgeSet.size());
+		System.out.println("vertexEdges (number of vertices): " + vertexEdges.size());
+		System.out.println("labelEdges (number of relations): " + labelEdges.size());
+		System.out.println("stripes: " + stripes.length);
+	}
+
+	@Override
+	public String toString() {
+		return "ConcurrentStringGraph [edges=" + numberOfEdges() + ", vertices=" + numberOfVertices() + ", relations=" + labelEdges.size() + "]";
+	}
+
+}
@@ -0,0 +1,159 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * Counts the independent cycles of (small) graphs such as frames/patterns: the cyclomatic number E - V + C of the undirected simple graph, where E is the
+ * number of distinct connected vertex pairs (edge direction, relation and repeated edges are ignored), V the number of vertices and C the number of
+ * components. Computed in a single pass over the edges with a union-find over vertex ids: an edge whose vertices are already in the same set closes a cycle.
+ * Each thread reuses its own id map, pair set and union-find arrays, so no memory is allocated per edge.
+ *
+ * @author jcfgonc@gmail.com
+ */
+public class CycleMetrics {
+	private static final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+
+	private static class Workspace {
+		final Object2IntOpenHashMap<String> vertexIds = new Object2IntOpenHashMap<>();
+		final LongOpenHashSet pairs = new LongOpenHashSet();
+		int[] parent = new int[64];
+		int[] cycles = new int[64];
+
+		Workspace() {
+			vertexIds.defaultReturnValue(-1);
+		}
+
+		void clear(int numVertices) {
+			vertexIds.clear();
+			pairs.clear();
+			if (parent.length < numVertices) {
+				parent = new int[numVertices * 2];
+				cycles = new int[numVertices * 2];
+			}
+		}
+
+		int getId(String vertex) {
+			int id = vertexIds.getInt(vertex);
+			if (id < 0) {
+				id = vertexIds.size();
+				vertexIds.put(vertex, id);
+				parent[id] = id;
+				cycles[id] = 0;
+			}
+			return id;
+		}
+
+		int find(int id) {
+			while (parent[id] != id) {
+				parent[id] = parent[parent[id]];
+				id = parent[id];
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * processes the edges of the graph, leaving in the workspace the union-find sets and the number of cycles closed at each root
+	 */
+	private static Workspace process(StringGraph graph) {
+		Workspace w = workspaces.get();
+		w.clear(graph.numberOfVertices());
+		for (StringEdge edge : graph.edgeSet()) {
+			int a = w.getId(edge.getSource());
+			int b = w.getId(edge.getTarget());
+			// each connected pair of vertices only counts once
+			long pair = a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+			if (!w.pairs.add(pair))
+				continue;
+			int ra = w.find(a);
+			int rb = w.find(b);
+			if (ra == rb) {
+				w.cycles[ra]++;
+			} else {
+				w.parent[rb] = ra;
+				w.cycles[ra] += w.cycles[rb];
+			}
+		}
+		return w;
+	}
+
+	/**
+	 * Returns the cyclomatic number of the given graph (the sum of its components' numbers).
+	 *
+	 * @param graph
+	 * @return
+	 */
+	public static int countCycles(StringGraph graph) {
+		Workspace w = process(graph);
+		int numVertices = w.vertexIds.size();
+		int cycles = 0;
+		for (int id = 0; id < numVertices; id++) {
+			if (w.parent[id] == id)
+				cycles += w.cycles[id];
+		}
+		return cycles;
+	}
+
+	/**
+	 * Returns the cyclomatic number of each component of the given graph, in descending order.
+	 *
+	 * @param graph
+	 * @return
+	 */
+	public static int[] countCyclesPerComponent(StringGraph graph) {
+		Workspace w = process(graph);
+		int numVertices = w.vertexIds.size();
+		int numComponents = 0;
+		for (int id = 0; id < numVertices; id++) {
+			if (w.parent[id] == id)
+				numComponents++;
+		}
+		int[] cycles = new int[numComponents];
+		int c = 0;
+		for (int id = 0; id < numVertices; id++) {
+			if (w.parent[id] == id)
+				cycles[c++] = w.cycles[id];
+		}
+		Arrays.sort(cycles);
+		// descending
+		for (int i = 0, j = numComponents - 1; i < j; i++, j--) {
+			int t = cycles[i];
+			cycles[i] = cycles[j];
+			cycles[j] = t;
+		}
+		return cycles;
+	}
+
+	/**
+	 * Returns the cyclomatic number of each of the given graphs, computed in parallel.
+	 *
+	 * @param graphs
+	 * @return
+	 */
+	public static int[] countCycles(List<StringGraph> graphs) {
+		return countCycles(graphs, Function.identity());
+	}
+
+	/**
+	 * Returns the cyclomatic number of the graph of each of the given elements, computed in parallel. For instance, countCycles(frames,
+	 * SemanticFrame::getFrame).
+	 *
+	 * @param elements
+	 * @param toGraph
+	 * @return
+	 */
+	public static <T> int[] countCycles(List<T> elements, Function<T, StringGraph> toGraph) {
+		int[] cycles = new int[elements.size()];
+		IntStream.range(0, elements.size()).parallel().forEach(i -> {
+			cycles[i] = countCycles(toGraph.apply(elements.get(i)));
+		});
+		return cycles;
+	}
+
+}
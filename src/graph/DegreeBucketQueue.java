@@ -0,0 +1,228 @@
+package graph;
+
+import java.util.ArrayList;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * Bucket queue of the vertices of a graph by their degree (of some kind, see DegreeIndex): bucket d holds the vertices with degree d. A vertex moves to the
+ * next/previous bucket in O(1) when its degree changes and vertices with degree zero are not kept. The extreme degrees are tracked so that the max/min,
+ * top-k and threshold queries take time proportional to the result (plus the empty buckets skipped). Kept updated by the graph's DegreeIndex.
+ *
+ * @author jcfgonc@gmail.com
+ */
+public class DegreeBucketQueue {
+	private final Object2IntOpenHashMap<String> degrees;
+	// position of each vertex in its bucket
+	private final Object2IntOpenHashMap<String> positions;
+	private final ArrayList<ArrayList<String>> buckets;
+	// extreme (non zero) degrees, zero if the queue is empty
+	private int maximumDegree;
+	private int minimumDegree;
+
+	DegreeBucketQueue() {
+		degrees = new Object2IntOpenHashMap<>();
+		positions = new Object2IntOpenHashMap<>();
+		buckets = new ArrayList<>();
+		// degree zero is never used
+		buckets.add(new ArrayList<>(0));
+		maximumDegree = 0;
+		minimumDegree = 0;
+	}
+
+	private ArrayList<String> getBucket(int degree) {
+		while (buckets.size() <= degree) {
+			buckets.add(new ArrayList<>());
+		}
+		return buckets.get(degree);
+	}
+
+	private void addToBucket(String vertex, int degree) {
+		ArrayList<String> bucket = getBucket(degree);
+		positions.put(vertex, bucket.size());
+		bucket.add(vertex);
+	}
+
+	/**
+	 * swaps the vertex with the last one of its bucket and removes it
+	 */
+	private void removeFromBucket(String vertex, int degree) {
+		ArrayList<String> bucket = buckets.get(degree);
+		int position = positions.getInt(vertex);
+		String last = bucket.remove(bucket.size() - 1);
+		if (last != vertex && !last.equals(vertex)) {
+			bucket.set(position, last);
+			positions.put(last, position);
+		}
+	}
+
+	private boolean isBucketEmpty(int degree) {
+		return degree >= buckets.size() || buckets.get(degree).isEmpty();
+	}
+
+	void increment(String vertex) {
+		int degree = degrees.getInt(vertex);
+		if (degree > 0)
+			removeFromBucket(vertex, degree);
+		degrees.put(vertex, degree + 1);
+		addToBucket(vertex, degree + 1);
+		if (degree + 1 > maximumDegree)
+			maximumDegree = degree + 1;
+		if (degree == 0)
+			minimumDegree = 1;
+		else if (degree == minimumDegree && isBucketEmpty(degree))
+			minimumDegree = degree + 1;
+	}
+
+	void decrement(String vertex) {
+		int degree = degrees.getInt(vertex);
+		if (degree <= 0)
+			return;
+		removeFromBucket(vertex, degree);
+		if (degree > 1) {
+			degrees.put(vertex, degree - 1);
+			addToBucket(vertex, degree - 1);
+			if (degree - 1 < minimumDegree)
+				minimumDegree = degree - 1;
+		} else {
+			degrees.removeInt(vertex);
+			positions.removeInt(vertex);
+		}
+		if (degrees.isEmpty()) {
+			maximumDegree = 0;
+			minimumDegree = 0;
+			return;
+		}
+		while (isBucketEmpty(maximumDegree)) {
+			maximumDegree--;
+		}
+		while (isBucketEmpty(minimumDegree)) {
+			minimumDegree++;
+		}
+	}
+
+	void clear() {
+		degrees.clear();
+		positions.clear();
+		buckets.clear();
+		buckets.add(new ArrayList<>(0));
+		maximumDegree = 0;
+		minimumDegree = 0;
+	}
+
+	/**
+	 * Returns the degree of the given vertex, zero if not in the graph.
+	 *
+	 * @param vertex
+	 * @return
+	 */
+	public int degreeOf(String vertex) {
+		return degrees.getInt(vertex);
+	}
+
+	/**
+	 * Returns the number of vertices with a degree higher than zero.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return degrees.size();
+	}
+
+	public boolean isEmpty() {
+		return degrees.isEmpty();
+	}
+
+	public int getMaximumDegree() {
+		return maximumDegree;
+	}
+
+	public int getMinimumDegree() {
+		return minimumDegree;
+	}
+
+	/**
+	 * Returns one of the vertices with the highest degree, null if the queue is empty.
+	 *
+	 * @return
+	 */
+	public String getHighestDegreeVertex() {
+		if (maximumDegree == 0)
+			return null;
+		return buckets.get(maximumDegree).get(0);
+	}
+
+	/**
+	 * Returns one of the vertices with the lowest (non zero) degree, null if the queue is empty.
+	 *
+	 * @return
+	 */
+	public String getLowestDegreeVertex() {
+		if (minimumDegree == 0)
+			return null;
+		return buckets.get(minimumDegree).get(0);
+	}
+
+	/**
+	 * SAFE, returns the (up to) k vertices with the highest degrees, in descending order of degree.
+	 *
+	 * @param k
+	 * @return
+	 */
+	public ArrayList<String> getHighestDegreeVertices(int k) {
+		ArrayList<String> vertices = new ArrayList<>(Math.min(k, degrees.size()));
+		for (int degree = maximumDegree; degree > 0 && vertices.size() < k; degree--) {
+			ArrayList<String> bucket = buckets.get(degree);
+			for (int i = 0; i < bucket.size() && vertices.size() < k; i++) {
+				vertices.add(bucket.get(i));
+			}
+		}
+		return vertices;
+	}
+
+	/**
+	 * SAFE, returns the (up to) k vertices with the lowest (non zero) degrees, in ascending order of degree.
+	 *
+	 * @param k
+	 * @return
+	 */
+	public ArrayList<String> getLowestDegreeVertices(int k) {
+		ArrayList<String> vertices = new ArrayList<>(Math.min(k, degrees.size()));
+		if (minimumDegree == 0)
+			return vertices;
+		for (int degree = minimumDegree; degree <= maximumDegree && vertices.size() < k; degree++) {
+			ArrayList<String> bucket = buckets.get(degree);
+			for (int i = 0; i < bucket.size() && vertices.size() < k; i++) {
+				vertices.add(bucket.get(i));
+			}
+		}
+		return vertices;
+	}
+
+	/**
+	 * SAFE, returns the vertices with a degree of at least the given threshold (and higher than zero), in descending order of degree.
+	 *
+	 * @param threshold
+	 * @return
+	 */
+	public ArrayList<String> getVerticesWithDegreeAtLeast(int threshold) {
+		ArrayList<String> vertices = new ArrayList<>();
+		for (int degree = maximumDegree; degree >= Math.max(1, threshold); degree--) {
+			vertices.addAll(buckets.get(degree));
+		}
+		return vertices;
+	}
+
+	/**
+	 * SAFE, returns the vertices with the given (non zero) degree.
+	 *
+	 * @param degree
+	 * @return
+	 */
+	public ArrayList<String> getVerticesWithDegree(int degree) {
+		if (degree <= 0 || isBucketEmpty(degree))
+			return new ArrayList<>(0);
+		return new ArrayList<>(buckets.get(degree));
+	}
+
+}
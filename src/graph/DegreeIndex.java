@@ -0,0 +1,106 @@
+package graph;
+
+import java.util.HashMap;
+
+/**
+ * Optional index of the degrees of the vertices of a StringGraph (see StringGraph.enableDegreeIndex()): total, incoming, outgoing and per relation degree
+ * bucket queues, updated in O(1) on every edge addition/removal.
+ *
+ * @author jcfgonc@gmail.com
+ */
+public class DegreeIndex {
+	private final DegreeBucketQueue degrees;
+	private final DegreeBucketQueue inDegrees;
+	private final DegreeBucketQueue outDegrees;
+	// relation -> degrees counting only the edges with that relation
+	private final HashMap<String, DegreeBucketQueue> labelDegrees;
+	private final DegreeBucketQueue emptyQueue;
+
+	DegreeIndex() {
+		degrees = new DegreeBucketQueue();
+		inDegrees = new DegreeBucketQueue();
+		outDegrees = new DegreeBucketQueue();
+		labelDegrees = new HashMap<>();
+		emptyQueue = new DegreeBucketQueue();
+	}
+
+	void add(StringEdge edge) {
+		String source = edge.getSource();
+		String target = edge.getTarget();
+		degrees.increment(source);
+		degrees.increment(target);
+		outDegrees.increment(source);
+		inDegrees.increment(target);
+		DegreeBucketQueue label = labelDegrees.get(edge.getLabel());
+		if (label == null) {
+			label = new DegreeBucketQueue();
+			labelDegrees.put(edge.getLabel(), label);
+		}
+		label.increment(source);
+		label.increment(target);
+	}
+
+	void remove(StringEdge edge) {
+		String source = edge.getSource();
+		String target = edge.getTarget();
+		degrees.decrement(source);
+		degrees.decrement(target);
+		outDegrees.decrement(source);
+		inDegrees.decrement(target);
+		DegreeBucketQueue label = labelDegrees.get(edge.getLabel());
+		if (label != null) {
+			label.decrement(source);
+			label.decrement(target);
+			if (label.isEmpty())
+				labelDegrees.remove(edge.getLabel());
+		}
+	}
+
+	void clear() {
+		degrees.clear();
+		inDegrees.clear();
+		outDegrees.clear();
+		labelDegrees.clear();
+	}
+
+	/**
+	 * UNSAFE, returns the queue of the vertices by degree (incoming plus outgoing edges).
+	 *
+	 * @return
+	 */
+	public DegreeBucketQueue getDegrees() {
+		return degrees;
+	}
+
+	/**
+	 * UNSAFE, returns the queue of the vertices by number of incoming edges.
+	 *
+	 * @return
+	 */
+	public DegreeBucketQueue getInDegrees() {
+		return inDegrees;
+	}
+
+	/**
+	 * UNSAFE, returns the queue of the vertices by number of outgoing edges.
+	 *
+	 * @return
+	 */
+	public DegreeBucketQueue getOutDegrees() {
+		return outDegrees;
+	}
+
+	/**
+	 * UNSAFE, returns the queue of the vertices by number of edges (incoming plus outgoing) with the given relation. Empty if the relation does not exist.
+	 *
+	 * @param label
+	 * @return
+	 */
+	public DegreeBucketQueue getDegrees(String label) {
+		DegreeBucketQueue queue = labelDegrees.get(label);
+		if (queue == null)
+			return emptyQueue;
+		return queue;
+	}
+
+}
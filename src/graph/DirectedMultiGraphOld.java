@@ -5,9 +5,17 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
-
-import structures.MapOfSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import structures.SnapshotHashMap;
+import structures.SnapshotHashSet;
+import structures.UnionSetView;
 import utils.VariousUtils;
 
 /**
@@ -20,32 +28,97 @@ import utils.VariousUtils;
  * @param <E> Edge Class
  */
 public class DirectedMultiGraphOld<V, E> {
-	private HashSet<E> edgeSet;
-	private HashMap<E, V> edgeSource;
-	private HashMap<E, V> edgeTarget;
-	private MapOfSet<V, E> incomingEdges;
-	private MapOfSet<V, E> outgoingEdges;
-	private HashSet<V> vertexSet;
+	private SnapshotHashSet<E> edgeSet;
+	private SnapshotHashMap<E, V> edgeSource;
+	private SnapshotHashMap<E, V> edgeTarget;
+	private SnapshotHashMap<V, Set<E>> incomingEdges;
+	private SnapshotHashMap<V, Set<E>> outgoingEdges;
+	private SnapshotHashSet<V> vertexSet;
 	private static final int DEFAULT_DATA_SIZE = 16;
 	private static final float DEFAULT_LOAD_FACTOR = 0.5f;
 	private final Set<E> unmodifiableEmptyEdgeSet = Collections.unmodifiableSet(new HashSet<E>(0));
+	// per-vertex sets of incoming/outgoing edges owned (writable) by this graph, null if all of them are (see snapshot())
+	private Set<Set<E>> ownedSets = null;
 
+	/**
+	 * The sizes are accepted for compatibility, the internal tables (hash tries) grow without rehashing.
+	 */
 	public DirectedMultiGraphOld(int numEdges, int inEdges, int outEdges, int numVertices) {
-		edgeSet = new HashSet<>(numEdges * 2, DEFAULT_LOAD_FACTOR);
-		edgeSource = new HashMap<>(numEdges * 2, DEFAULT_LOAD_FACTOR);
-		edgeTarget = new HashMap<>(numEdges * 2, DEFAULT_LOAD_FACTOR);
-		incomingEdges = new MapOfSet<>(inEdges * 2, DEFAULT_LOAD_FACTOR);
-		outgoingEdges = new MapOfSet<>(outEdges * 2, DEFAULT_LOAD_FACTOR);
-		vertexSet = new HashSet<>(numVertices * 2, DEFAULT_LOAD_FACTOR);
+		this();
 	}
 
 	public DirectedMultiGraphOld() {
-		edgeSet = new HashSet<>(DEFAULT_DATA_SIZE, DEFAULT_LOAD_FACTOR);
-		edgeSource = new HashMap<>(DEFAULT_DATA_SIZE, DEFAULT_LOAD_FACTOR);
-		edgeTarget = new HashMap<>(DEFAULT_DATA_SIZE, DEFAULT_LOAD_FACTOR);
-		incomingEdges = new MapOfSet<>(DEFAULT_DATA_SIZE, DEFAULT_LOAD_FACTOR);
-		outgoingEdges = new MapOfSet<>(DEFAULT_DATA_SIZE, DEFAULT_LOAD_FACTOR);
-		vertexSet = new HashSet<>(DEFAULT_DATA_SIZE, DEFAULT_LOAD_FACTOR);
+		edgeSet = new SnapshotHashSet<>();
+		edgeSource = new SnapshotHashMap<>();
+		edgeTarget = new SnapshotHashMap<>();
+		incomingEdges = new SnapshotHashMap<>();
+		outgoingEdges = new SnapshotHashMap<>();
+		vertexSet = new SnapshotHashSet<>();
+	}
+
+	/**
+	 * Returns a copy of this graph in O(1). The top-level tables are persistent hash tries shared by both graphs, each modification copying only the O(log |E|)
+	 * nodes on its path, and the first modification of a vertex's incoming/outgoing edges also copies that vertex's set. No modification copies a whole table.
+	 * 
+	 * @return
+	 */
+	public DirectedMultiGraphOld<V, E> snapshot() {
+		DirectedMultiGraphOld<V, E> copy = new DirectedMultiGraphOld<V, E>();
+		copy.edgeSet = edgeSet.snapshot();
+		copy.edgeSource = edgeSource.snapshot();
+		copy.edgeTarget = edgeTarget.snapshot();
+		copy.incomingEdges = incomingEdges.snapshot();
+		copy.outgoingEdges = outgoingEdges.snapshot();
+		copy.vertexSet = vertexSet.snapshot();
+		copy.ownedSets = newIdentitySet();
+		this.ownedSets = newIdentitySet();
+		return copy;
+	}
+
+	private static <T> Set<T> newIdentitySet() {
+		return Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+	}
+
+	private static <T> HashSet<T> copyOf(Set<T> set) {
+		HashSet<T> copy = new HashSet<>(Math.max(DEFAULT_DATA_SIZE, set.size() * 2), DEFAULT_LOAD_FACTOR);
+		copy.addAll(set);
+		return copy;
+	}
+
+	/**
+	 * returns the set of edges mapped to the given vertex, ready to be modified by this graph (copied if shared with another graph), or null
+	 */
+	private Set<E> writableSet(Map<V, Set<E>> map, V vertex) {
+		Set<E> set = map.get(vertex);
+		if (set == null || ownedSets == null || ownedSets.contains(set))
+			return set;
+		HashSet<E> copy = copyOf(set);
+		map.put(vertex, copy);
+		ownedSets.add(copy);
+		return copy;
+	}
+
+	private void addToSet(Map<V, Set<E>> map, V vertex, E edge) {
+		Set<E> set = writableSet(map, vertex);
+		if (set == null) {
+			set = new HashSet<>(DEFAULT_DATA_SIZE, DEFAULT_LOAD_FACTOR);
+			map.put(vertex, set);
+			if (ownedSets != null)
+				ownedSets.add(set);
+		}
+		set.add(edge);
+	}
+
+	private void removeFromSet(Map<V, Set<E>> map, V vertex, E edge) {
+		Set<E> set = writableSet(map, vertex);
+		if (set == null)
+			return;
+		set.remove(edge);
+		if (set.isEmpty()) {
+			map.remove(vertex);
+			if (ownedSets != null)
+				ownedSets.remove(set);
+		}
 	}
 
 	/**
@@ -79,20 +152,121 @@ public class DirectedMultiGraphOld<V, E> {
 		System.out.println("vertexSet (number of vertices): " + vertexSet.size());
 	}
 
-	public void addEdge(V source, V target, E edge) {
-		// this must be prevented outside this function call
-//		if (containsEdge(edge)) {
-//			throw new RuntimeException("adding an existing edge");
-//		}
+	/**
+	 * adds the given edge, returning false if it already existed in the graph
+	 * 
+	 * @param source
+	 * @param target
+	 * @param edge
+	 * @return
+	 */
+	public boolean addEdge(V source, V target, E edge) {
+		if (edgeSet.contains(edge)) {
+			return false;
+		}
+		edgeSet.add(edge);
 
-		incomingEdges.add(target, edge);
-		outgoingEdges.add(source, edge);
+		addToSet(incomingEdges, target, edge);
+		addToSet(outgoingEdges, source, edge);
 		edgeSource.put(edge, source);
 		edgeTarget.put(edge, target);
-		edgeSet.add(edge);
 
 		vertexSet.add(source);
 		vertexSet.add(target);
+		return true;
+	}
+
+	/**
+	 * Adds the given edges, which must not be in the graph yet, building the adjacency in parallel. The edges are bucketed by vertex (hash) in parallel, then
+	 * each thread fills the incoming/outgoing sets of the vertices of its buckets, so that no set is touched by two threads. The sets are published in the
+	 * adjacency maps once complete, while the calling thread fills the per-edge tables.
+	 * 
+	 * @param edges
+	 * @param sourceOf returns the source vertex of an edge
+	 * @param targetOf returns the target vertex of an edge
+	 */
+	public void addNewEdgesParallel(Collection<E> edges, Function<E, V> sourceOf, Function<E, V> targetOf) {
+		@SuppressWarnings("unchecked")
+		E[] edgeArray = (E[]) edges.toArray();
+		int numPartitions = Runtime.getRuntime().availableProcessors();
+		int chunkSize = (edgeArray.length + numPartitions - 1) / numPartitions;
+		// buckets[chunk][partition] for outgoing (by source) and incoming (by target) edges
+		ArrayList<ArrayList<ArrayList<E>>> outBuckets = new ArrayList<>(numPartitions);
+		ArrayList<ArrayList<ArrayList<E>>> inBuckets = new ArrayList<>(numPartitions);
+		for (int i = 0; i < numPartitions; i++) {
+			outBuckets.add(newBuckets(numPartitions));
+			inBuckets.add(newBuckets(numPartitions));
+		}
+		// outgoing partitions first, then incoming; each returns the sets it filled, by vertex
+		ArrayList<HashMap<V, Set<E>>> filledSets = new ArrayList<>(Collections.nCopies(numPartitions * 2, null));
+		CompletableFuture<Void> adjacency = CompletableFuture.runAsync(() -> {
+			IntStream.range(0, numPartitions).parallel().forEach(chunk -> {
+				int to = Math.min(edgeArray.length, (chunk + 1) * chunkSize);
+				for (int i = chunk * chunkSize; i < to; i++) {
+					E edge = edgeArray[i];
+					outBuckets.get(chunk).get(partitionOf(sourceOf.apply(edge), numPartitions)).add(edge);
+					inBuckets.get(chunk).get(partitionOf(targetOf.apply(edge), numPartitions)).add(edge);
+				}
+			});
+			IntStream.range(0, numPartitions * 2).parallel().forEach(task -> {
+				boolean outgoing = task < numPartitions;
+				int partition = task % numPartitions;
+				Map<V, Set<E>> map = outgoing ? outgoingEdges : incomingEdges;
+				Function<E, V> vertexOf = outgoing ? sourceOf : targetOf;
+				HashMap<V, Set<E>> sets = new HashMap<>();
+				for (ArrayList<ArrayList<E>> chunkBuckets : outgoing ? outBuckets : inBuckets) {
+					for (E edge : chunkBuckets.get(partition)) {
+						V vertex = vertexOf.apply(edge);
+						Set<E> set = sets.get(vertex);
+						if (set == null) {
+							// the maps are only read until all the tasks are done
+							Set<E> existing = map.get(vertex);
+							if (existing == null) {
+								set = new HashSet<>(DEFAULT_DATA_SIZE, DEFAULT_LOAD_FACTOR);
+							} else if (ownedSets == null || ownedSets.contains(existing)) {
+								set = existing;
+							} else {
+								set = copyOf(existing);
+							}
+							sets.put(vertex, set);
+						}
+						set.add(edge);
+					}
+				}
+				filledSets.set(task, sets);
+			});
+		});
+		for (E edge : edgeArray) {
+			V source = sourceOf.apply(edge);
+			V target = targetOf.apply(edge);
+			edgeSet.add(edge);
+			edgeSource.put(edge, source);
+			edgeTarget.put(edge, target);
+			vertexSet.add(source);
+			vertexSet.add(target);
+		}
+		adjacency.join();
+		for (int task = 0; task < numPartitions * 2; task++) {
+			Map<V, Set<E>> map = task < numPartitions ? outgoingEdges : incomingEdges;
+			for (Map.Entry<V, Set<E>> entry : filledSets.get(task).entrySet()) {
+				map.put(entry.getKey(), entry.getValue());
+				if (ownedSets != null)
+					ownedSets.add(entry.getValue());
+			}
+		}
+	}
+
+	private static <E> ArrayList<ArrayList<E>> newBuckets(int numPartitions) {
+		ArrayList<ArrayList<E>> buckets = new ArrayList<>(numPartitions);
+		for (int i = 0; i < numPartitions; i++) {
+			buckets.add(new ArrayList<>());
+		}
+		return buckets;
+	}
+
+	private static int partitionOf(Object vertex, int numPartitions) {
+		int h = vertex.hashCode();
+		return Math.floorMod(h ^ (h >>> 16), numPartitions);
 	}
 
 	public boolean containsEdge(E se) {
@@ -139,6 +313,65 @@ public class DirectedMultiGraphOld<V, E> {
 		return VariousUtils.mergeSets(in, out);
 	}
 
+	/**
+	 * UNSAFE, returns an unmodifiable view (not a copy) of the edges touching (both incoming and outgoing to) the given vertex. The view changes as the graph
+	 * changes.
+	 * 
+	 * @param vertex
+	 * @return
+	 */
+	public Set<E> edgesOfView(V vertex) {
+		Set<E> in = incomingEdges.get(vertex);
+		Set<E> out = outgoingEdges.get(vertex);
+		if (in == null || in.isEmpty())
+			return outgoingEdgesOf(vertex);
+		if (out == null || out.isEmpty())
+			return Collections.unmodifiableSet(in);
+		return new UnionSetView<>(in, out);
+	}
+
+	/**
+	 * Invokes the consumer for each edge touching (incoming first, then outgoing) the given vertex, without allocating any set. A loop edge is visited twice.
+	 * The graph must not be modified by the consumer.
+	 * 
+	 * @param vertex
+	 * @param consumer
+	 */
+	public void forEachEdgeOf(V vertex, Consumer<E> consumer) {
+		forEachIncoming(vertex, consumer);
+		forEachOutgoing(vertex, consumer);
+	}
+
+	/**
+	 * Invokes the consumer for each edge with the target as the given vertex. The graph must not be modified by the consumer.
+	 * 
+	 * @param vertex
+	 * @param consumer
+	 */
+	public void forEachIncoming(V vertex, Consumer<E> consumer) {
+		Set<E> in = incomingEdges.get(vertex);
+		if (in != null) {
+			for (E edge : in) {
+				consumer.accept(edge);
+			}
+		}
+	}
+
+	/**
+	 * Invokes the consumer for each edge with the source as the given vertex. The graph must not be modified by the consumer.
+	 * 
+	 * @param vertex
+	 * @param consumer
+	 */
+	public void forEachOutgoing(V vertex, Consumer<E> consumer) {
+		Set<E> out = outgoingEdges.get(vertex);
+		if (out != null) {
+			for (E edge : out) {
+				consumer.accept(edge);
+			}
+		}
+	}
+
 	/**
 	 * SAFE, get edges outgoing from v0 incoming to v1
 	 * 
@@ -211,25 +444,21 @@ public class DirectedMultiGraphOld<V, E> {
 		return Collections.unmodifiableSet(set);
 	}
 
-	public void removeEdge(E edge) {
+	/**
+	 * removes the given edge, returning false if it did not exist in the graph
+	 * 
+	 * @param edge
+	 * @return
+	 */
+	public boolean removeEdge(E edge) {
 		if (!containsEdge(edge))
-			return;
+			return false;
 
 		V target = getEdgeTarget(edge);
-		Set<E> si = incomingEdges.get(target);
-		if (si != null) {
-			incomingEdges.remove(target, edge);
-			if (si.isEmpty())
-				incomingEdges.removeKey(target);
-		}
+		removeFromSet(incomingEdges, target, edge);
 
 		V source = getEdgeSource(edge);
-		Set<E> so = outgoingEdges.get(source);
-		if (so != null) {
-			outgoingEdges.remove(source, edge);
-			if (so.isEmpty())
-				outgoingEdges.removeKey(source);
-		}
+		removeFromSet(outgoingEdges, source, edge);
 
 		if (degreeOf(source) == 0) {
 			vertexSet.remove(source);
@@ -241,6 +470,7 @@ public class DirectedMultiGraphOld<V, E> {
 		edgeSet.remove(edge);
 		edgeSource.remove(edge);
 		edgeTarget.remove(edge);
+		return true;
 	}
 
 	public void removeEdges(Collection<E> toRemove) {
@@ -275,12 +505,13 @@ public class DirectedMultiGraphOld<V, E> {
 	}
 
 	public void clear() {
-		edgeSet = new HashSet<>(DEFAULT_DATA_SIZE);
-		edgeSource = new HashMap<>(DEFAULT_DATA_SIZE);
-		edgeTarget = new HashMap<>(DEFAULT_DATA_SIZE);
-		incomingEdges = new MapOfSet<>(DEFAULT_DATA_SIZE);
-		outgoingEdges = new MapOfSet<>(DEFAULT_DATA_SIZE);
-		vertexSet = new HashSet<>(DEFAULT_DATA_SIZE);
+		edgeSet = new SnapshotHashSet<>();
+		edgeSource = new SnapshotHashMap<>();
+		edgeTarget = new SnapshotHashMap<>();
+		incomingEdges = new SnapshotHashMap<>();
+		outgoingEdges = new SnapshotHashMap<>();
+		vertexSet = new SnapshotHashSet<>();
+		ownedSets = null;
 	}
 
 	@Override
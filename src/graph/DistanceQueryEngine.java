@@ -0,0 +1,217 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Answers (undirected, edge direction is ignored) distance queries between vertices of a FrozenStringGraph using a bidirectional breadth first search over
+ * the vertex ids. Each thread keeps its own visitation buffers which are stamped with an epoch per query instead of being cleared, so after the first query
+ * of a thread no memory is allocated. Thread-safe.
+ *
+ * @author jcfgonc@gmail.com
+ */
+public class DistanceQueryEngine {
+	private final FrozenStringGraph graph;
+	private final int[] outOffsets;
+	private final int[] outTargets;
+	private final int[] inOffsets;
+	private final int[] inSources;
+	private final ThreadLocal<SearchBuffers> buffers;
+
+	/**
+	 * Visitation state of one side of the search. A vertex v is visited in the current query if mark[v] == epoch, having been reached at distance[v].
+	 */
+	private static class SearchSide {
+		final int[] mark;
+		final int[] distance;
+		// vertices in visiting order, the current frontier is [levelStart, tail)
+		final int[] queue;
+		int levelStart;
+		int tail;
+		int radius;
+
+		SearchSide(int numVertices) {
+			mark = new int[numVertices];
+			distance = new int[numVertices];
+			queue = new int[numVertices];
+		}
+
+		void reset(int vertex, int epoch) {
+			mark[vertex] = epoch;
+			distance[vertex] = 0;
+			queue[0] = vertex;
+			levelStart = 0;
+			tail = 1;
+			radius = 0;
+		}
+
+		int frontierSize() {
+			return tail - levelStart;
+		}
+	}
+
+	private static class SearchBuffers {
+		final SearchSide forward;
+		final SearchSide backward;
+		int epoch;
+
+		SearchBuffers(int numVertices) {
+			forward = new SearchSide(numVertices);
+			backward = new SearchSide(numVertices);
+			epoch = 0;
+		}
+
+		int nextEpoch() {
+			if (epoch == Integer.MAX_VALUE) {
+				// the stamps would wrap around, start over with clean marks
+				Arrays.fill(forward.mark, 0);
+				Arrays.fill(backward.mark, 0);
+				epoch = 0;
+			}
+			return ++epoch;
+		}
+	}
+
+	public DistanceQueryEngine(StringGraph graph) {
+		this(graph.freeze());
+	}
+
+	public DistanceQueryEngine(FrozenStringGraph graph) {
+		this.graph = graph;
+		this.outOffsets = graph.getOutOffsets();
+		this.outTargets = graph.getOutTargets();
+		this.inOffsets = graph.getInOffsets();
+		this.inSources = graph.getInSources();
+		int numVertices = graph.numberOfVertices();
+		this.buffers = ThreadLocal.withInitial(() -> new SearchBuffers(numVertices));
+	}
+
+	public FrozenStringGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Returns the number of edges of the shortest (undirected) path between both vertices or Integer.MAX_VALUE if they are not connected by a path with at most
+	 * maxDistance edges or if any of them does not exist.
+	 *
+	 * @param origin
+	 * @param destination
+	 * @param maxDistance
+	 * @return
+	 */
+	public int getDistance(String origin, String destination, int maxDistance) {
+		return getDistance(graph.getVertexId(origin), graph.getVertexId(destination), maxDistance);
+	}
+
+	/**
+	 * Same as getDistance(String, String, int) using the ids of the vertices in the FrozenStringGraph.
+	 *
+	 * @param origin
+	 * @param destination
+	 * @param maxDistance
+	 * @return
+	 */
+	public int getDistance(int origin, int destination, int maxDistance) {
+		if (origin < 0 || destination < 0 || maxDistance < 0)
+			return Integer.MAX_VALUE;
+		if (origin == destination)
+			return 0;
+		SearchBuffers b = buffers.get();
+		int epoch = b.nextEpoch();
+		SearchSide forward = b.forward;
+		SearchSide backward = b.backward;
+		forward.reset(origin, epoch);
+		backward.reset(destination, epoch);
+		// while nothing was met, a path must have more than forward.radius + backward.radius edges
+		while (forward.radius + backward.radius < maxDistance) {
+			// grow the side with the smallest frontier
+			int distance;
+			if (forward.frontierSize() <= backward.frontierSize()) {
+				distance = expandLevel(forward, backward, epoch);
+			} else {
+				distance = expandLevel(backward, forward, epoch);
+			}
+			if (distance >= 0)
+				return distance;
+			// one of the sides exhausted its component
+			if (forward.frontierSize() == 0 || backward.frontierSize() == 0)
+				break;
+		}
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Visits the next level of the given side. Returns the length of the path as soon as a vertex visited by the other side is reached or -1 if none was. The
+	 * first meeting gives the shortest path because the whole previous level of both sides did not meet.
+	 */
+	private int expandLevel(SearchSide side, SearchSide other, int epoch) {
+		int levelEnd = side.tail;
+		int nextDistance = side.radius + 1;
+		int[] mark = side.mark;
+		int[] otherMark = other.mark;
+		for (int i = side.levelStart; i < levelEnd; i++) {
+			int v = side.queue[i];
+			for (int j = outOffsets[v]; j < outOffsets[v + 1]; j++) {
+				int w = outTargets[j];
+				if (mark[w] == epoch)
+					continue;
+				if (otherMark[w] == epoch)
+					return nextDistance + other.distance[w];
+				mark[w] = epoch;
+				side.distance[w] = nextDistance;
+				side.queue[side.tail++] = w;
+			}
+			for (int j = inOffsets[v]; j < inOffsets[v + 1]; j++) {
+				int w = inSources[j];
+				if (mark[w] == epoch)
+					continue;
+				if (otherMark[w] == epoch)
+					return nextDistance + other.distance[w];
+				mark[w] = epoch;
+				side.distance[w] = nextDistance;
+				side.queue[side.tail++] = w;
+			}
+		}
+		side.levelStart = levelEnd;
+		side.radius = nextDistance;
+		return -1;
+	}
+
+	/**
+	 * Answers the given (origins[i], destinations[i], maxDistances[i]) queries in parallel. Returns the distances in the same order as the queries.
+	 *
+	 * @param origins
+	 * @param destinations
+	 * @param maxDistances
+	 * @return
+	 */
+	public int[] getDistances(int[] origins, int[] destinations, int[] maxDistances) {
+		if (origins.length != destinations.length || origins.length != maxDistances.length)
+			throw new RuntimeException("the arrays of the queries must have the same length");
+		int[] distances = new int[origins.length];
+		IntStream.range(0, origins.length).parallel().forEach(i -> {
+			distances[i] = getDistance(origins[i], destinations[i], maxDistances[i]);
+		});
+		return distances;
+	}
+
+	/**
+	 * Answers the given (origins[i], destinations[i]) queries in parallel, all with the same maximum distance. Returns the distances in the same order as the
+	 * queries.
+	 *
+	 * @param origins
+	 * @param destinations
+	 * @param maxDistance
+	 * @return
+	 */
+	public int[] getDistances(String[] origins, String[] destinations, int maxDistance) {
+		if (origins.length != destinations.length)
+			throw new RuntimeException("the arrays of the queries must have the same length");
+		int[] distances = new int[origins.length];
+		IntStream.range(0, origins.length).parallel().forEach(i -> {
+			distances[i] = getDistance(origins[i], destinations[i], maxDistance);
+		});
+		return distances;
+	}
+
+}
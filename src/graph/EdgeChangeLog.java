@@ -0,0 +1,86 @@
+package graph;
+
+/**
+ * Bounded journal (ring buffer) of the edge additions/removals of a StringGraph, each one tagged with the graph's version (modification count) after it.
+ * Answers "what changed since version N" in O(changes) while N is still in the journal.
+ *
+ * @author jcfgonc@gmail.com
+ */
+class EdgeChangeLog {
+	private final StringEdge[] edges;
+	private final boolean[] added;
+	private final long[] versions;
+	// position of the next entry
+	private int head;
+	private int size;
+	// changes at or before this version are unknown (not in the journal)
+	private long oldestKnownVersion;
+
+	EdgeChangeLog(int capacity, long currentVersion) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("EdgeChangeLog() called with capacity " + capacity);
+		}
+		edges = new StringEdge[capacity];
+		added = new boolean[capacity];
+		versions = new long[capacity];
+		reset(currentVersion);
+	}
+
+	int getCapacity() {
+		return edges.length;
+	}
+
+	void record(StringEdge edge, boolean wasAdded, long version) {
+		if (size == edges.length) {
+			// forget the oldest entry
+			oldestKnownVersion = versions[head];
+		} else {
+			size++;
+		}
+		edges[head] = edge;
+		added[head] = wasAdded;
+		versions[head] = version;
+		head = (head + 1) % edges.length;
+	}
+
+	/**
+	 * forgets every entry, changes up to the given version are no longer known
+	 * 
+	 * @param currentVersion
+	 */
+	void reset(long currentVersion) {
+		for (int i = 0; i < edges.length; i++) {
+			edges[i] = null;
+		}
+		head = 0;
+		size = 0;
+		oldestKnownVersion = currentVersion;
+	}
+
+	/**
+	 * returns the net changes after the given version, or null if some of them are no longer in the journal
+	 * 
+	 * @param version
+	 * @param currentVersion
+	 * @return
+	 */
+	GraphDelta changesSince(long version, long currentVersion) {
+		if (version < oldestKnownVersion || version > currentVersion)
+			return null;
+		GraphDelta delta = new GraphDelta(version, currentVersion);
+		// entries are in increasing version order starting at the oldest
+		int start = (head - size + edges.length) % edges.length;
+		for (int i = 0; i < size; i++) {
+			int pos = (start + i) % edges.length;
+			if (versions[pos] <= version)
+				continue;
+			if (added[pos]) {
+				delta.edgeAdded(edges[pos]);
+			} else {
+				delta.edgeRemoved(edges[pos]);
+			}
+		}
+		return delta;
+	}
+
+}
@@ -0,0 +1,220 @@
+package graph;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import structures.SnapshotHashMap;
+import structures.SnapshotHashSet;
+
+/**
+ * Secondary indices of the edges of a StringGraph: (vertex, relation) to outgoing/incoming edges and relation to edges. Used to answer relation filtered
+ * queries in O(result) instead of scanning a vertex's adjacency or the whole edge set. Kept updated by the StringGraph on every edge addition/removal.
+ *
+ * @author jcfgonc@gmail.com
+ */
+class EdgeLabelIndex implements Serializable {
+	private static final long serialVersionUID = 2918347412877510032L;
+	private static final float DEFAULT_LOAD_FACTOR = 0.5f;
+	private static final int DEFAULT_INNER_SIZE = 4;
+	// source -> relation -> edges
+	private SnapshotHashMap<String, HashMap<String, HashSet<StringEdge>>> outgoing;
+	// target -> relation -> edges
+	private SnapshotHashMap<String, HashMap<String, HashSet<StringEdge>>> incoming;
+	// relation -> edges
+	private SnapshotHashMap<String, SnapshotHashSet<StringEdge>> labelEdges;
+
+	// per-vertex maps and per-relation sets owned (writable) by this index, null if all of them are (see snapshot())
+	private Set<Object> ownedObjects;
+
+	EdgeLabelIndex() {
+		clear();
+	}
+
+	void clear() {
+		outgoing = new SnapshotHashMap<>();
+		incoming = new SnapshotHashMap<>();
+		labelEdges = new SnapshotHashMap<>();
+		ownedObjects = null;
+	}
+
+	/**
+	 * Returns a copy of this index in O(1), sharing the internal structures with it (see DirectedMultiGraphOld.snapshot()). A modification copies the O(log
+	 * |V|) trie nodes on its path, the relation map of the touched vertex (with its sets) the first time that vertex is modified, and the path to the edge in
+	 * the (structurally shared) set of its relation.
+	 * 
+	 * @return
+	 */
+	EdgeLabelIndex snapshot() {
+		EdgeLabelIndex copy = new EdgeLabelIndex();
+		copy.outgoing = outgoing.snapshot();
+		copy.incoming = incoming.snapshot();
+		copy.labelEdges = labelEdges.snapshot();
+		copy.ownedObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+		this.ownedObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+		return copy;
+	}
+
+	private static HashSet<StringEdge> copyOf(Set<StringEdge> set) {
+		HashSet<StringEdge> copy = new HashSet<>(Math.max(DEFAULT_INNER_SIZE, set.size() * 2), DEFAULT_LOAD_FACTOR);
+		copy.addAll(set);
+		return copy;
+	}
+
+	private boolean isOwned(Object o) {
+		return ownedObjects == null || ownedObjects.contains(o);
+	}
+
+	private void setOwned(Object o) {
+		if (ownedObjects != null)
+			ownedObjects.add(o);
+	}
+
+	void add(StringEdge edge) {
+		String label = edge.getLabel();
+		addToIndex(outgoing, edge.getSource(), label, edge);
+		addToIndex(incoming, edge.getTarget(), label, edge);
+		addToLabelEdges(label, edge);
+	}
+
+	void remove(StringEdge edge) {
+		String label = edge.getLabel();
+		removeFromIndex(outgoing, edge.getSource(), label, edge);
+		removeFromIndex(incoming, edge.getTarget(), label, edge);
+		removeFromLabelEdges(label, edge);
+	}
+
+	/**
+	 * returns the vertex's relation map ready to be modified by this index (copied with its sets if shared with another index), or null
+	 */
+	private HashMap<String, HashSet<StringEdge>> writableVertexLabels(Map<String, HashMap<String, HashSet<StringEdge>>> index, String vertex) {
+		HashMap<String, HashSet<StringEdge>> vertexLabels = index.get(vertex);
+		if (vertexLabels == null || isOwned(vertexLabels))
+			return vertexLabels;
+		HashMap<String, HashSet<StringEdge>> copy = new HashMap<>(Math.max(DEFAULT_INNER_SIZE, vertexLabels.size() * 2), DEFAULT_LOAD_FACTOR);
+		for (Map.Entry<String, HashSet<StringEdge>> entry : vertexLabels.entrySet()) {
+			copy.put(entry.getKey(), copyOf(entry.getValue()));
+		}
+		index.put(vertex, copy);
+		setOwned(copy);
+		return copy;
+	}
+
+	private void addToIndex(Map<String, HashMap<String, HashSet<StringEdge>>> index, String vertex, String label, StringEdge edge) {
+		HashMap<String, HashSet<StringEdge>> vertexLabels = writableVertexLabels(index, vertex);
+		if (vertexLabels == null) {
+			vertexLabels = new HashMap<>(DEFAULT_INNER_SIZE, DEFAULT_LOAD_FACTOR);
+			index.put(vertex, vertexLabels);
+			setOwned(vertexLabels);
+		}
+		// the sets of an owned relation map are owned too
+		HashSet<StringEdge> set = vertexLabels.get(label);
+		if (set == null) {
+			set = new HashSet<>(DEFAULT_INNER_SIZE, DEFAULT_LOAD_FACTOR);
+			vertexLabels.put(label, set);
+		}
+		set.add(edge);
+	}
+
+	/**
+	 * returns the set of edges with the given relation ready to be modified by this index (an O(1) snapshot if shared with another index), or null
+	 */
+	private SnapshotHashSet<StringEdge> writableLabelEdges(String label) {
+		SnapshotHashSet<StringEdge> set = labelEdges.get(label);
+		if (set == null || isOwned(set))
+			return set;
+		set = set.snapshot();
+		labelEdges.put(label, set);
+		setOwned(set);
+		return set;
+	}
+
+	private void addToLabelEdges(String label, StringEdge edge) {
+		SnapshotHashSet<StringEdge> set = writableLabelEdges(label);
+		if (set == null) {
+			set = new SnapshotHashSet<>();
+			labelEdges.put(label, set);
+			setOwned(set);
+		}
+		set.add(edge);
+	}
+
+	private void removeFromIndex(Map<String, HashMap<String, HashSet<StringEdge>>> index, String vertex, String label, StringEdge edge) {
+		HashMap<String, HashSet<StringEdge>> vertexLabels = writableVertexLabels(index, vertex);
+		if (vertexLabels == null)
+			return;
+		HashSet<StringEdge> set = vertexLabels.get(label);
+		if (set == null)
+			return;
+		set.remove(edge);
+		if (set.isEmpty())
+			vertexLabels.remove(label);
+		if (vertexLabels.isEmpty()) {
+			index.remove(vertex);
+			if (ownedObjects != null)
+				ownedObjects.remove(vertexLabels);
+		}
+	}
+
+	private void removeFromLabelEdges(String label, StringEdge edge) {
+		SnapshotHashSet<StringEdge> set = writableLabelEdges(label);
+		if (set == null)
+			return;
+		set.remove(edge);
+		if (set.isEmpty()) {
+			labelEdges.remove(label);
+			if (ownedObjects != null)
+				ownedObjects.remove(set);
+		}
+	}
+
+	private static Set<StringEdge> getFromIndex(Map<String, HashMap<String, HashSet<StringEdge>>> index, String vertex, String label) {
+		HashMap<String, HashSet<StringEdge>> vertexLabels = index.get(vertex);
+		if (vertexLabels == null)
+			return null;
+		return vertexLabels.get(label);
+	}
+
+	/**
+	 * UNSAFE, returns the internal set of edges leaving the given vertex with the given relation, or null if none.
+	 */
+	Set<StringEdge> getOutgoing(String vertex, String label) {
+		return getFromIndex(outgoing, vertex, label);
+	}
+
+	/**
+	 * UNSAFE, returns the internal set of edges arriving at the given vertex with the given relation, or null if none.
+	 */
+	Set<StringEdge> getIncoming(String vertex, String label) {
+		return getFromIndex(incoming, vertex, label);
+	}
+
+	/**
+	 * UNSAFE, returns the internal set of edges with the given relation, or null if none.
+	 */
+	Set<StringEdge> getEdges(String label) {
+		return labelEdges.get(label);
+	}
+
+	/**
+	 * returns the number of edges with the given relation
+	 */
+	int numberOfEdges(String label) {
+		Set<StringEdge> edges = labelEdges.get(label);
+		if (edges == null)
+			return 0;
+		return edges.size();
+	}
+
+	/**
+	 * UNSAFE, returns the internal set of relations with at least one edge.
+	 */
+	Set<String> getLabels() {
+		return labelEdges.keySet();
+	}
+
+}
@@ -0,0 +1,555 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * Immutable and compact version of a StringGraph, meant for read-heavy workloads over knowledge bases which are not changed after being loaded. Vertices and
+ * relations are interned to dense integer ids (in lexicographic order) and both the outgoing and incoming adjacencies are stored in compressed sparse row
+ * (CSR) arrays, sorted by relation and then by neighbor. No StringEdge is kept in memory: the functions returning edges create them from the arrays. Created
+ * with StringGraph.freeze().
+ *
+ * @author jcfgonc@gmail.com
+ */
+public class FrozenStringGraph {
+	private final String[] vertices;
+	private final String[] labels;
+	private final Object2IntOpenHashMap<String> vertexToId;
+	private final Object2IntOpenHashMap<String> labelToId;
+	// outgoing edges of vertex v are in the range [outOffsets[v], outOffsets[v+1])
+	private final int[] outOffsets;
+	private final int[] outLabels;
+	private final int[] outTargets;
+	// incoming edges of vertex v are in the range [inOffsets[v], inOffsets[v+1])
+	private final int[] inOffsets;
+	private final int[] inLabels;
+	private final int[] inSources;
+	// edges with label l are in the range [labelOffsets[l], labelOffsets[l+1])
+	private final int[] labelOffsets;
+	private final int[] labelSources;
+	private final int[] labelTargets;
+
+	public FrozenStringGraph(StringGraph graph) {
+		this(graph.edgeSet());
+	}
+
+	/**
+	 * Creates the compact graph from the given set of edges.
+	 *
+	 * @param edges
+	 */
+	public FrozenStringGraph(Set<StringEdge> edges) {
+		// intern vertices and labels
+		HashSet<String> vertexSet = new HashSet<>(16, 0.5f);
+		HashSet<String> labelSet = new HashSet<>(16, 0.5f);
+		for (StringEdge edge : edges) {
+			vertexSet.add(edge.getSource());
+			vertexSet.add(edge.getTarget());
+			labelSet.add(edge.getLabel());
+		}
+		this.vertices = vertexSet.toArray(new String[vertexSet.size()]);
+		this.labels = labelSet.toArray(new String[labelSet.size()]);
+		Arrays.sort(vertices);
+		Arrays.sort(labels);
+		this.vertexToId = createIndex(vertices);
+		this.labelToId = createIndex(labels);
+
+		// encode the edges as integer triples
+		int numEdges = edges.size();
+		int[] sources = new int[numEdges];
+		int[] edgeLabels = new int[numEdges];
+		int[] targets = new int[numEdges];
+		int i = 0;
+		for (StringEdge edge : edges) {
+			sources[i] = vertexToId.getInt(edge.getSource());
+			edgeLabels[i] = labelToId.getInt(edge.getLabel());
+			targets[i] = vertexToId.getInt(edge.getTarget());
+			i++;
+		}
+
+		int numVertices = vertices.length;
+		this.outOffsets = new int[numVertices + 1];
+		this.outLabels = new int[numEdges];
+		this.outTargets = new int[numEdges];
+		buildCSR(numVertices, sources, edgeLabels, targets, outOffsets, outLabels, outTargets);
+
+		this.inOffsets = new int[numVertices + 1];
+		this.inLabels = new int[numEdges];
+		this.inSources = new int[numEdges];
+		buildCSR(numVertices, targets, edgeLabels, sources, inOffsets, inLabels, inSources);
+
+		this.labelOffsets = new int[labels.length + 1];
+		this.labelSources = new int[numEdges];
+		this.labelTargets = new int[numEdges];
+		buildCSR(labels.length, edgeLabels, sources, targets, labelOffsets, labelSources, labelTargets);
+	}
+
+	/**
+	 * Creates the compact graph from prebuilt arrays (see BinaryGraphReadWrite): the vertices and labels sorted lexicographically and the outgoing and incoming
+	 * CSR adjacencies, sorted as in the other constructor. The arrays are not copied.
+	 */
+	FrozenStringGraph(String[] vertices, String[] labels, int[] outOffsets, int[] outLabels, int[] outTargets, int[] inOffsets, int[] inLabels, int[] inSources) {
+		this.vertices = vertices;
+		this.labels = labels;
+		this.vertexToId = createIndex(vertices);
+		this.labelToId = createIndex(labels);
+		this.outOffsets = outOffsets;
+		this.outLabels = outLabels;
+		this.outTargets = outTargets;
+		this.inOffsets = inOffsets;
+		this.inLabels = inLabels;
+		this.inSources = inSources;
+
+		int numEdges = outTargets.length;
+		int[] sources = new int[numEdges];
+		for (int v = 0; v < vertices.length; v++) {
+			Arrays.fill(sources, outOffsets[v], outOffsets[v + 1], v);
+		}
+		this.labelOffsets = new int[labels.length + 1];
+		this.labelSources = new int[numEdges];
+		this.labelTargets = new int[numEdges];
+		buildCSR(labels.length, outLabels, sources, outTargets, labelOffsets, labelSources, labelTargets);
+	}
+
+	private static Object2IntOpenHashMap<String> createIndex(String[] strings) {
+		Object2IntOpenHashMap<String> index = new Object2IntOpenHashMap<>(strings.length);
+		index.defaultReturnValue(-1);
+		for (int i = 0; i < strings.length; i++) {
+			index.put(strings[i], i);
+		}
+		return index;
+	}
+
+	/**
+	 * Groups the triples (key, a, b) by key (counting sort) storing a and b in the ranges given by offsets. Each range is sorted by a and then by b.
+	 */
+	static void buildCSR(int numKeys, int[] keys, int[] a, int[] b, int[] offsets, int[] outA, int[] outB) {
+		int n = keys.length;
+		for (int i = 0; i < n; i++) {
+			offsets[keys[i] + 1]++;
+		}
+		for (int k = 0; k < numKeys; k++) {
+			offsets[k + 1] += offsets[k];
+		}
+		// pack (a,b) in a long to sort both at once
+		long[] packed = new long[n];
+		int[] cursor = Arrays.copyOf(offsets, numKeys);
+		for (int i = 0; i < n; i++) {
+			packed[cursor[keys[i]]++] = ((long) a[i] << 32) | b[i];
+		}
+		for (int k = 0; k < numKeys; k++) {
+			Arrays.sort(packed, offsets[k], offsets[k + 1]);
+		}
+		for (int i = 0; i < n; i++) {
+			outA[i] = (int) (packed[i] >>> 32);
+			outB[i] = (int) packed[i];
+		}
+	}
+
+	/**
+	 * returns the first position in [from,to) of the sorted array with a value not lower than key
+	 */
+	private static int lowerBound(int[] array, int from, int to, int key) {
+		int lo = from;
+		int hi = to;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (array[mid] < key)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Returns the id of the given vertex or -1 if it does not exist in this graph.
+	 *
+	 * @param vertex
+	 * @return
+	 */
+	public int getVertexId(String vertex) {
+		return vertexToId.getInt(vertex);
+	}
+
+	public String getVertexName(int id) {
+		return vertices[id];
+	}
+
+	/**
+	 * Returns the id of the given relation or -1 if it does not exist in this graph.
+	 *
+	 * @param label
+	 * @return
+	 */
+	public int getLabelId(String label) {
+		return labelToId.getInt(label);
+	}
+
+	public String getLabelName(int id) {
+		return labels[id];
+	}
+
+	public int numberOfVertices() {
+		return vertices.length;
+	}
+
+	public int numberOfEdges() {
+		return outTargets.length;
+	}
+
+	public int numberOfEdges(String label) {
+		int l = getLabelId(label);
+		if (l < 0)
+			return 0;
+		return labelOffsets[l + 1] - labelOffsets[l];
+	}
+
+	public int numberOfLabels() {
+		return labels.length;
+	}
+
+	public boolean isEmpty() {
+		return outTargets.length == 0;
+	}
+
+	public boolean containsVertex(String vertex) {
+		return vertexToId.containsKey(vertex);
+	}
+
+	public boolean containsEdge(String source, String target, String label) {
+		int s = getVertexId(source);
+		int t = getVertexId(target);
+		int l = getLabelId(label);
+		if (s < 0 || t < 0 || l < 0)
+			return false;
+		int from = lowerBound(outLabels, outOffsets[s], outOffsets[s + 1], l);
+		int to = lowerBound(outLabels, from, outOffsets[s + 1], l + 1);
+		int pos = lowerBound(outTargets, from, to, t);
+		return pos < to && outTargets[pos] == t;
+	}
+
+	public boolean containsEdge(StringEdge edge) {
+		return containsEdge(edge.getSource(), edge.getTarget(), edge.getLabel());
+	}
+
+	public int outDegreeOf(int vertex) {
+		return outOffsets[vertex + 1] - outOffsets[vertex];
+	}
+
+	public int inDegreeOf(int vertex) {
+		return inOffsets[vertex + 1] - inOffsets[vertex];
+	}
+
+	public int degreeOf(int vertex) {
+		return outDegreeOf(vertex) + inDegreeOf(vertex);
+	}
+
+	public int getOutDegree(String vertex) {
+		int v = getVertexId(vertex);
+		if (v < 0)
+			return 0;
+		return outDegreeOf(v);
+	}
+
+	public int getInDegree(String vertex) {
+		int v = getVertexId(vertex);
+		if (v < 0)
+			return 0;
+		return inDegreeOf(v);
+	}
+
+	/**
+	 * Returns the degree (number of connected edges) of the given vertex
+	 *
+	 * @param vertex
+	 * @return
+	 */
+	public int degreeOf(String vertex) {
+		int v = getVertexId(vertex);
+		if (v < 0)
+			return 0;
+		return degreeOf(v);
+	}
+
+	/**
+	 * UNSAFE, internal CSR arrays used by the id based algorithms (see DistanceQueryEngine and RandomWalkSampler).
+	 */
+	int[] getOutOffsets() {
+		return outOffsets;
+	}
+
+	int[] getOutTargets() {
+		return outTargets;
+	}
+
+	int[] getOutLabels() {
+		return outLabels;
+	}
+
+	int[] getInOffsets() {
+		return inOffsets;
+	}
+
+	int[] getInSources() {
+		return inSources;
+	}
+
+	int[] getInLabels() {
+		return inLabels;
+	}
+
+	/**
+	 * Invokes the consumer with (source, label, target) for each edge leaving the given vertex id, sorted by label and then by target.
+	 *
+	 * @param vertex
+	 * @param consumer
+	 */
+	public void forEachOutgoing(int vertex, IntTriConsumer consumer) {
+		for (int i = outOffsets[vertex]; i < outOffsets[vertex + 1]; i++) {
+			consumer.accept(vertex, outLabels[i], outTargets[i]);
+		}
+	}
+
+	/**
+	 * Invokes the consumer with (source, label, target) for each edge arriving at the given vertex id, sorted by label and then by source.
+	 *
+	 * @param vertex
+	 * @param consumer
+	 */
+	public void forEachIncoming(int vertex, IntTriConsumer consumer) {
+		for (int i = inOffsets[vertex]; i < inOffsets[vertex + 1]; i++) {
+			consumer.accept(inSources[i], inLabels[i], vertex);
+		}
+	}
+
+	/**
+	 * Invokes the consumer with (source, label, target) for every edge of this graph, sorted by source, label and target.
+	 *
+	 * @param consumer
+	 */
+	public void forEachEdge(IntTriConsumer consumer) {
+		for (int v = 0; v < vertices.length; v++) {
+			forEachOutgoing(v, consumer);
+		}
+	}
+
+	private StringEdge createEdge(int source, int label, int target) {
+		return new StringEdge(vertices[source], vertices[target], labels[label]);
+	}
+
+	/**
+	 * SAFE, local copy. Returns the edges with the source as the given vertex
+	 *
+	 * @param vertex
+	 * @return
+	 */
+	public Set<StringEdge> outgoingEdgesOf(String vertex) {
+		int v = getVertexId(vertex);
+		if (v < 0)
+			return new HashSet<>(0);
+		return createOutgoingEdges(v, outOffsets[v], outOffsets[v + 1]);
+	}
+
+	/**
+	 * SAFE, local copy. Returns the edges with the source as the given vertex and with the given relation
+	 *
+	 * @param vertex
+	 * @param filter
+	 * @return
+	 */
+	public Set<StringEdge> outgoingEdgesOf(String vertex, String filter) {
+		int v = getVertexId(vertex);
+		int l = getLabelId(filter);
+		if (v < 0 || l < 0)
+			return new HashSet<>(0);
+		int from = lowerBound(outLabels, outOffsets[v], outOffsets[v + 1], l);
+		int to = lowerBound(outLabels, from, outOffsets[v + 1], l + 1);
+		return createOutgoingEdges(v, from, to);
+	}
+
+	private Set<StringEdge> createOutgoingEdges(int vertex, int from, int to) {
+		HashSet<StringEdge> edges = new HashSet<>((to - from) * 2);
+		for (int i = from; i < to; i++) {
+			edges.add(createEdge(vertex, outLabels[i], outTargets[i]));
+		}
+		return edges;
+	}
+
+	/**
+	 * SAFE, local copy. Returns the edges with the target as the given vertex
+	 *
+	 * @param vertex
+	 * @return
+	 */
+	public Set<StringEdge> incomingEdgesOf(String vertex) {
+		int v = getVertexId(vertex);
+		if (v < 0)
+			return new HashSet<>(0);
+		return createIncomingEdges(v, inOffsets[v], inOffsets[v + 1]);
+	}
+
+	/**
+	 * SAFE, local copy. Returns the edges with the target as the given vertex and with the given relation
+	 *
+	 * @param vertex
+	 * @param filter
+	 * @return
+	 */
+	public Set<StringEdge> incomingEdgesOf(String vertex, String filter) {
+		int v = getVertexId(vertex);
+		int l = getLabelId(filter);
+		if (v < 0 || l < 0)
+			return new HashSet<>(0);
+		int from = lowerBound(inLabels, inOffsets[v], inOffsets[v + 1], l);
+		int to = lowerBound(inLabels, from, inOffsets[v + 1], l + 1);
+		return createIncomingEdges(v, from, to);
+	}
+
+	private Set<StringEdge> createIncomingEdges(int vertex, int from, int to) {
+		HashSet<StringEdge> edges = new HashSet<>((to - from) * 2);
+		for (int i = from; i < to; i++) {
+			edges.add(createEdge(inSources[i], inLabels[i], vertex));
+		}
+		return edges;
+	}
+
+	/**
+	 * SAFE, local copy. Returns both incoming and outgoing edges of the given vertex.
+	 *
+	 * @param vertex
+	 * @return
+	 */
+	public Set<StringEdge> edgesOf(String vertex) {
+		Set<StringEdge> edges = outgoingEdgesOf(vertex);
+		edges.addAll(incomingEdgesOf(vertex));
+		return edges;
+	}
+
+	/**
+	 * SAFE, local copy. Returns the set of vertices connected to the given vertex.
+	 *
+	 * @param vertex
+	 * @return
+	 */
+	public Set<String> getNeighborVertices(String vertex) {
+		int v = getVertexId(vertex);
+		if (v < 0)
+			return new HashSet<>(0);
+		HashSet<String> neighbors = new HashSet<>(degreeOf(v) * 2);
+		for (int i = outOffsets[v]; i < outOffsets[v + 1]; i++) {
+			neighbors.add(vertices[outTargets[i]]);
+		}
+		for (int i = inOffsets[v]; i < inOffsets[v + 1]; i++) {
+			neighbors.add(vertices[inSources[i]]);
+		}
+		neighbors.remove(vertex);
+		return neighbors;
+	}
+
+	/**
+	 * SAFE, local copy.
+	 */
+	public Set<String> getOutgoingVertices(String vertex) {
+		int v = getVertexId(vertex);
+		if (v < 0)
+			return new HashSet<>(0);
+		HashSet<String> targets = new HashSet<>(outDegreeOf(v) * 2);
+		for (int i = outOffsets[v]; i < outOffsets[v + 1]; i++) {
+			targets.add(vertices[outTargets[i]]);
+		}
+		targets.remove(vertex);
+		return targets;
+	}
+
+	/**
+	 * SAFE, local copy.
+	 */
+	public Set<String> getIncomingVertices(String vertex) {
+		int v = getVertexId(vertex);
+		if (v < 0)
+			return new HashSet<>(0);
+		HashSet<String> sources = new HashSet<>(inDegreeOf(v) * 2);
+		for (int i = inOffsets[v]; i < inOffsets[v + 1]; i++) {
+			sources.add(vertices[inSources[i]]);
+		}
+		sources.remove(vertex);
+		return sources;
+	}
+
+	/**
+	 * SAFE, local copy. Returns all the edges of this graph.
+	 *
+	 * @return
+	 */
+	public Set<StringEdge> edgeSet() {
+		HashSet<StringEdge> edges = new HashSet<>(numberOfEdges() * 2);
+		for (int v = 0; v < vertices.length; v++) {
+			for (int i = outOffsets[v]; i < outOffsets[v + 1]; i++) {
+				edges.add(createEdge(v, outLabels[i], outTargets[i]));
+			}
+		}
+		return edges;
+	}
+
+	/**
+	 * SAFE, local copy. Returns the edges with the given relation.
+	 *
+	 * @param label
+	 * @return
+	 */
+	public Set<StringEdge> edgeSet(String label) {
+		int l = getLabelId(label);
+		if (l < 0)
+			return new HashSet<>(0);
+		HashSet<StringEdge> edges = new HashSet<>((labelOffsets[l + 1] - labelOffsets[l]) * 2);
+		for (int i = labelOffsets[l]; i < labelOffsets[l + 1]; i++) {
+			edges.add(createEdge(labelSources[i], l, labelTargets[i]));
+		}
+		return edges;
+	}
+
+	/**
+	 * SAFE, local copy.
+	 *
+	 * @return
+	 */
+	public Set<String> getVertexSet() {
+		return new HashSet<>(Arrays.asList(vertices));
+	}
+
+	/**
+	 * SAFE, local copy. Returns the set of relations/labels in this graph's edges.
+	 *
+	 * @return
+	 */
+	public HashSet<String> getEdgeLabelSet() {
+		return new HashSet<>(Arrays.asList(labels));
+	}
+
+	/**
+	 * Creates a new (mutable) StringGraph with the edges of this graph.
+	 *
+	 * @return
+	 */
+	public StringGraph toStringGraph() {
+		int numEdges = numberOfEdges();
+		StringGraph graph = new StringGraph(numEdges, vertices.length, vertices.length, vertices.length);
+		forEachEdge((source, label, target) -> graph.addEdge(createEdge(source, label, target)));
+		return graph;
+	}
+
+	public void showStructureSizes() {
+		System.out.println("vertices (number of vertices): " + vertices.length);
+		System.out.println("labels (number of relations): " + labels.length);
+		System.out.println("edges (number of edges): " + numberOfEdges());
+	}
+
+	public String toString() {
+		return "FrozenStringGraph [vertices=" + vertices.length + ", labels=" + labels.length + ", edges=" + numberOfEdges() + "]";
+	}
+
+}
@@ -1,9 +1,8 @@
 package graph;
 
-import java.io.IOException;
-import java.net.URISyntaxException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -12,20 +11,17 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.math3.random.RandomGenerator;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
-import stream.ParallelConsumer;
 import structures.ConceptPair;
 import structures.ListOfSet;
 import structures.MapOfSet;
 import structures.ObjectCounter;
 import structures.ObjectIndex;
 import structures.OrderedPair;
-import structures.UnorderedPair;
 import utils.VariousUtils;
 
 public class GraphAlgorithms {
@@ -35,6 +31,13 @@ public class GraphAlgorithms {
 
 	public static MapOfSet<String, StringEdge> createNameSpaceToEdgeSet(StringGraph inputSpace_) {
 		MapOfSet<String, StringEdge> nameSpaceEdges = new MapOfSet<String, StringEdge>();
+		NamespaceIndex index = inputSpace_.getNamespaceIndex();
+		if (index != null) {
+			for (String namespace : index.getNamespaces()) {
+				nameSpaceEdges.add(namespace, index.getEdges(namespace));
+			}
+			return nameSpaceEdges;
+		}
 		Set<StringEdge> edgeSet = inputSpace_.edgeSet();
 		for (StringEdge edge : edgeSet) {
 			// String label = edge.getLabel();
@@ -55,6 +58,13 @@ public class GraphAlgorithms {
 
 	public static MapOfSet<String, String> createNameSpaceToConceptSet(StringGraph inputSpace) {
 		MapOfSet<String, String> nameSpaces = new MapOfSet<>();
+		NamespaceIndex index = inputSpace.getNamespaceIndex();
+		if (index != null) {
+			for (String namespace : index.getNamespaces()) {
+				nameSpaces.add(namespace, index.getVertices(namespace));
+			}
+			return nameSpaces;
+		}
 		// scan for namespaces, stored as namespace/concept
 		for (String concept : inputSpace.getVertexSet()) {
 			String currentNameSpace = getConceptNamespace(concept);
@@ -83,15 +93,14 @@ public class GraphAlgorithms {
 			if (closedSet.contains(vertexId))
 				continue;
 			// get the vertex neighbors not in the closed set
-			Set<String> neighbors = graph.getNeighborVertices(vertexId);
-			for (String neighborId : neighbors) {
+			graph.forEachNeighbor(vertexId, neighborId -> {
 				if (closedSet.contains(neighborId))
-					continue;
+					return;
 				// put the neighbors in the open set
 				openSetAddition.add(neighborId);
 				if (ee != null)
 					ee.expanding(vertexId, neighborId);
-			}
+			});
 			// vertex from the open set explored, remove it from further
 			// exploration
 			openSetRemoval.add(vertexId);
@@ -119,15 +128,14 @@ public class GraphAlgorithms {
 		// not in the closed set
 		if (!closedSet.contains(vertexId)) {
 			// get the vertex neighbors not in the closed set
-			Set<String> neighbors = graph.getNeighborVertices(vertexId);
-			for (String neighborId : neighbors) {
+			graph.forEachNeighbor(vertexId, neighborId -> {
 				if (closedSet.contains(neighborId))
-					continue;
+					return;
 				// put the neighbors in the open set
 				openSetAddition.add(neighborId);
 				if (ee != null)
 					ee.expanding(vertexId, neighborId);
-			}
+			});
 			// vertex from the open set explored, remove it from further
 			// exploration
 			openSetRemoval.add(vertexId);
@@ -138,6 +146,15 @@ public class GraphAlgorithms {
 
 	public static Map<String, String> createConceptToNameSpaceMap(StringGraph genericSpace) {
 		HashMap<String, String> conceptToNS = new HashMap<>();
+		NamespaceIndex index = genericSpace.getNamespaceIndex();
+		if (index != null) {
+			for (String namespace : index.getNamespaces()) {
+				for (String concept : index.getVertices(namespace)) {
+					conceptToNS.put(concept, namespace);
+				}
+			}
+			return conceptToNS;
+		}
 		for (String concept : genericSpace.getVertexSet()) {
 			String namespace = getConceptNamespace(concept);
 			conceptToNS.put(concept, namespace);
@@ -146,7 +163,8 @@ public class GraphAlgorithms {
 	}
 
 	/**
-	 * Creates a new graph whose vertices are contained in the given namespaces.
+	 * Creates a new graph whose vertices are contained in the given namespaces. If the graph's namespace index is enabled only the edges of the given namespaces
+	 * are visited.
 	 *
 	 * @param graph
 	 * @param namespaces
@@ -154,6 +172,17 @@ public class GraphAlgorithms {
 	 */
 	public static StringGraph filterNamespaces(StringGraph graph, Collection<String> namespaces) {
 		StringGraph out = new StringGraph();
+		NamespaceIndex index = graph.getNamespaceIndex();
+		if (index != null) {
+			for (String namespace : new HashSet<>(namespaces)) {
+				for (StringEdge edge : index.getEdges(namespace)) {
+					if (namespaces.contains(index.getNamespace(edge.getSource())) && namespaces.contains(index.getNamespace(edge.getTarget()))) {
+						out.addEdge(edge);
+					}
+				}
+			}
+			return out;
+		}
 		Set<StringEdge> edgeSet = graph.edgeSet();
 		for (StringEdge edge : edgeSet) {
 			String label = edge.getLabel();
@@ -262,6 +291,10 @@ public class GraphAlgorithms {
 		return currentvertex;
 	}
 
+	/**
+	 * Returns the (undirected) distance between both vertices or Integer.MAX_VALUE if higher than maxDistance. For many queries over a graph which is not
+	 * changed use a DistanceQueryEngine.
+	 */
 	public static int getDistance(StringGraph graph, String origin, String destination, int maxDistance) {
 		// set of visited and to visit vertices for the expansion process
 		// expand from vertex0 until arriving at vertex1
@@ -271,9 +304,9 @@ public class GraphAlgorithms {
 
 		int distance = 0;
 		do {
-			// only expand while there are vertices to expand
+			// only expand while there are vertices to expand, otherwise the destination is unreachable
 			if (openSet.size() == 0)
-				break;
+				return Integer.MAX_VALUE;
 			// reached destination?
 			if (openSet.contains(destination))
 				break;
@@ -675,30 +708,7 @@ public class GraphAlgorithms {
 	 * @return
 	 */
 	public static ListOfSet<String> extractGraphComponents(StringGraph graph) {
-		ListOfSet<String> graphComponents = new ListOfSet<>();
-		HashSet<String> potentialSet = new HashSet<>(graph.getVertexSet());
-		while (potentialSet.size() > 0) {
-			// just get a vertex
-			String firstVertex = potentialSet.iterator().next();
-			HashSet<String> closedSet = new HashSet<>(16, 0.333f);
-			HashSet<String> openSet = new HashSet<>(16, 0.333f);
-			// start in a given vertex
-			openSet.add(firstVertex);
-			// expand all neighbors
-			// when it stops, you get an island
-			while (openSet.size() > 0) {
-				Set<String> newVertices = GraphAlgorithms.expandFromOpenSetOneLevel(openSet, closedSet, graph, null);
-				if (newVertices.isEmpty())
-					break;
-				openSet.addAll(newVertices);
-				openSet.removeAll(closedSet);
-			}
-			// one more component done
-			graphComponents.add(closedSet);
-			potentialSet.removeAll(closedSet);
-		}
-		graphComponents.sortList(false);
-		return graphComponents;
+		return new GraphComponents(graph).toListOfSet();
 	}
 
 	/**
@@ -707,16 +717,14 @@ public class GraphAlgorithms {
 	 * @param graph
 	 */
 	public static void removeSmallerComponents(StringGraph graph) {
-		ListOfSet<String> components = extractGraphComponents(graph);
-		// vertices in the largest component
-		HashSet<String> componentVertices = components.getSetAt(0);
-		// graph vertices in a array for better caching
-		ArrayList<String> graphVertices = new ArrayList<String>(graph.getVertexSet());
-		// remove from graph the vertices not contained in the component
-		for (String vertice : graphVertices) {
-			if (componentVertices.contains(vertice))
-				continue;
-			graph.removeVertex(vertice);
+		GraphComponents components = new GraphComponents(graph);
+		if (components.numberOfComponents() < 2)
+			return;
+		// remove from graph the vertices not contained in the largest component
+		for (int i = 1; i < components.numberOfComponents(); i++) {
+			for (int id : components.getComponent(i)) {
+				graph.removeVertex(components.getVertex(id));
+			}
 		}
 	}
 
@@ -768,12 +776,10 @@ public class GraphAlgorithms {
 			for (String vertexId : openSet) {
 				if (closedSet.contains(vertexId))
 					continue;
-				Set<String> neighbors = graph.getNeighborVertices(vertexId);
-				for (String neighborId : neighbors) {
-					if (closedSet.contains(neighborId))
-						continue;
-					openSetAddition.add(neighborId);
-				}
+				graph.forEachNeighbor(vertexId, neighborId -> {
+					if (!closedSet.contains(neighborId))
+						openSetAddition.add(neighborId);
+				});
 				openSetRemoval.add(vertexId);
 				closedSet.add(vertexId);
 			}
@@ -786,7 +792,19 @@ public class GraphAlgorithms {
 	}
 
 	public static StringGraph intersectGraphWithVertexSet(StringGraph graph, Set<String> maskingVertexSet) {
-		StringGraph graphCopy = new StringGraph(graph);
+		if (maskingVertexSet.size() * 2 < graph.numberOfVertices()) {
+			// small mask, build the intersection from the edges of the masked vertices
+			StringGraph intersection = new StringGraph(graph.getInterner());
+			for (String vertex : maskingVertexSet) {
+				graph.forEachOutgoing(vertex, edge -> {
+					if (maskingVertexSet.contains(edge.getTarget()))
+						intersection.addEdge(edge);
+				});
+			}
+			return intersection;
+		}
+		// large mask, remove the vertices outside it from a (copy-on-write) snapshot
+		StringGraph graphCopy = graph.snapshot();
 		// get list of vertices from graph
 		Set<String> graphVertexSet = graph.getVertexSet();
 		// iterate vertices from graph
@@ -817,6 +835,9 @@ public class GraphAlgorithms {
 	}
 
 	public static HashSet<String> getNameSpaces(StringGraph graph) {
+		NamespaceIndex index = graph.getNamespaceIndex();
+		if (index != null)
+			return new HashSet<>(index.getNamespaces());
 		Set<String> concepts = graph.getVertexSet();
 		HashSet<String> namespaces = new HashSet<>(16, 0.333f);
 		for (String concept : concepts) {
@@ -849,6 +870,8 @@ public class GraphAlgorithms {
 	}
 
 	public static String getHighestDegreeVertex(StringGraph graph) {
+		if (graph.isDegreeIndexEnabled())
+			return graph.getDegreeIndex().getDegrees().getHighestDegreeVertex();
 		return getHighestDegreeVertex(graph.getVertexSet(), graph);
 	}
 
@@ -901,6 +924,8 @@ public class GraphAlgorithms {
 	}
 
 	public static String getLowestDegreeVertex(StringGraph graph) {
+		if (graph.isDegreeIndexEnabled())
+			return graph.getDegreeIndex().getDegrees().getLowestDegreeVertex();
 		return getLowestDegreeVertex(graph.getVertexSet(), graph);
 	}
 
@@ -1005,6 +1030,30 @@ public class GraphAlgorithms {
 		return out;
 	}
 
+	/**
+	 * Converts a string graph using textual concepts/relations to an edge-object-free graph of integers.
+	 *
+	 * @param graph
+	 * @param vertexLabels
+	 * @param relationLabels
+	 * @return
+	 */
+	public static IntPackedDirectedMultiGraph convertStringGraph2IntPackedDirectedMultiGraph(StringGraph graph, // --
+			ObjectIndex<String> vertexLabels, // --
+			ObjectIndex<String> relationLabels) {
+		return IntPackedDirectedMultiGraph.convert(graph, vertexLabels, relationLabels);
+	}
+
+	public static StringGraph convertIntPackedDirectedMultiGraph2StringGraph(IntPackedDirectedMultiGraph graph, // --
+			ObjectIndex<String> vertexLabels, // --
+			ObjectIndex<String> relationLabels) {
+		StringGraph out = new StringGraph(graph.numberOfEdges(), graph.numberOfEdges(), graph.numberOfEdges(), graph.numberOfVertices());
+		graph.forEachEdge((source, label, target) -> {
+			out.addEdge(vertexLabels.getObject(source), vertexLabels.getObject(target), relationLabels.getObject(label));
+		});
+		return out;
+	}
+
 	/**
 	 * returns the histogram of the graph edge's relations
 	 * 
@@ -1012,7 +1061,7 @@ public class GraphAlgorithms {
 	 * @return
 	 */
 	public static Object2IntOpenHashMap<String> countRelations(StringGraph graph) {
-		return countRelations(graph.edgeSet());
+		return graph.getRelationHistogram();
 	}
 
 	/**
@@ -1157,50 +1206,14 @@ public class GraphAlgorithms {
 		return false;
 	}
 
+	/**
+	 * Returns the number of independent cycles (cyclomatic number) of the given pattern, summed over all of its components. See CycleMetrics.
+	 * 
+	 * @param pattern
+	 * @return
+	 */
 	public static int countCycles(StringGraph pattern) {
-		// this only works if the graph has one component
-
-		// TODO: adapt this to support multiple components
-		ArrayDeque<StringEdge> edgesToVisit = new ArrayDeque<>();
-		// TODO if there are errors in cycle counting replace unorderedpair with
-		// orderedpair
-		HashSet<UnorderedPair<String>> edgesVisited = new HashSet<>(16, 0.333f);
-		HashSet<String> verticesVisited = new HashSet<>(16, 0.333f);
-
-		StringEdge startingEdge = pattern.edgeSet().iterator().next();
-		edgesToVisit.add(startingEdge);
-		int cycles = 0;
-
-		while (true) {
-			StringEdge edge = edgesToVisit.pollLast();
-			if (edge == null)
-				break;
-			String source = edge.getSource();
-			String target = edge.getTarget();
-			// check if the vertex pair has been already visited
-			UnorderedPair<String> edgeUndirected = new UnorderedPair<String>(source, target);
-			if (edgesVisited.contains(edgeUndirected))
-				continue;
-			edgesVisited.add(edgeUndirected);
-
-			boolean sourceVisited = verticesVisited.contains(source);
-			boolean targetVisited = verticesVisited.contains(target);
-			if (sourceVisited && targetVisited) {
-				cycles++;
-			}
-
-			verticesVisited.add(source);
-			verticesVisited.add(target);
-
-			// do not add coincident edges, i.e., guarantee unique vertex pairs
-			HashSet<StringEdge> edgesTouching = pattern.edgesOf(edge);
-			for (StringEdge newEdge : edgesTouching) {
-				UnorderedPair<String> newEdgeConcepts = new UnorderedPair<String>(newEdge.getSource(), newEdge.getTarget());
-				if (!edgesVisited.contains(newEdgeConcepts))
-					edgesToVisit.add(newEdge);
-			}
-		}
-		return cycles;
+		return CycleMetrics.countCycles(pattern);
 	}
 
 	/**
@@ -1381,111 +1394,19 @@ public class GraphAlgorithms {
 		return Integer.MAX_VALUE;
 	}
 
-	public static void propagateRelationsThroughInheritance(StringGraph graph) throws IOException, URISyntaxException {
-
-		propagateRelationsThroughInheritance(graph, "building", 5);
-		System.exit(0);
-
-		HashSet<String> root_isa = GraphAlgorithms.findRootIsaConcepts(graph);
-
-		ParallelConsumer<String> pc = new ParallelConsumer<>(4);
-		try {
-			pc.parallelForEach(root_isa, rootConcept -> {
-				try {
-					final int maxDeepness = 8;
-					propagateRelationsThroughInheritance(graph, rootConcept, maxDeepness);
-				} catch (Exception e) {
-					e.printStackTrace();
-				}
-			});
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
-		System.out.println("waiting");
-		pc.shutdown();
-		System.out.println("shutdown");
-	}
-
 	/**
-	 * used to share the function propagateRelationsThroughInheritance() by multiple threads
+	 * Propagates the relations of each concept to its children (ISA) starting at the roots of the ISA hierarchy, see InheritancePropagator.
+	 * 
+	 * @param graph
+	 * @throws InterruptedException
 	 */
-	private static ReentrantReadWriteLock smpLock = new ReentrantReadWriteLock();
-
-	public static void propagateRelationsThroughInheritance(StringGraph graph, String rootConcept, int maximumDeepness) throws IOException, URISyntaxException {
-
-		ArrayDeque<String> openSet = new ArrayDeque<String>();
-		HashSet<String> openSet_Hash = new HashSet<String>();
-		HashSet<String> closedSet = new HashSet<String>();
-		Object2IntOpenHashMap<String> deepness = new Object2IntOpenHashMap<String>();
-		deepness.put(rootConcept, 0);
-
-		openSet.addLast(rootConcept);
-		openSet_Hash.add(rootConcept);
-
-		while (!openSet.isEmpty()) {
-
-			String parent = openSet.remove();
-			openSet_Hash.remove(parent);
-			closedSet.add(parent);
-
-			smpLock.readLock().lock();
-			// what concepts "ISA" parent?
-			Set<StringEdge> isaEdges = graph.incomingEdgesOf(parent, "isa");
-			smpLock.readLock().unlock();
-
-			int childDeepness = deepness.getInt(parent) + 1;
-
-			if (!isaEdges.isEmpty() && childDeepness < maximumDeepness) {
-
-				ArrayList<StringEdge> parentEdges = new ArrayList<StringEdge>();
-				smpLock.readLock().lock();
-				parentEdges.addAll(graph.outgoingEdgesOf(parent, "capableof"));
-				parentEdges.addAll(graph.outgoingEdgesOf(parent, "isa"));
-				parentEdges.addAll(graph.outgoingEdgesOf(parent, "causes"));
-				parentEdges.addAll(graph.outgoingEdgesOf(parent, "atlocation"));
-				parentEdges.addAll(graph.outgoingEdgesOf(parent, "desires"));
-				parentEdges.addAll(graph.outgoingEdgesOf(parent, "usedto"));
-				parentEdges.addAll(graph.outgoingEdgesOf(parent, "partof"));
-				parentEdges.addAll(graph.outgoingEdgesOf(parent, "madeof"));
-				parentEdges.addAll(graph.outgoingEdgesOf(parent, "requires"));
-				parentEdges.addAll(graph.outgoingEdgesOf(parent, "symbolof"));
-				parentEdges.addAll(graph.outgoingEdgesOf(parent, "createdby"));
-				smpLock.readLock().unlock();
-
-				for (StringEdge isaEdge : isaEdges) {
-					String child = isaEdge.getSource();
-
-					// test if child ISA parent
-					// allow for expansion level limit
-					if (!closedSet.contains(child) && !openSet_Hash.contains(child)) {
-						openSet.push(child);
-						openSet_Hash.add(child);
-						deepness.put(child, childDeepness);
-						// when expanding children, propagate stuff from the current parent
-						if (!parentEdges.isEmpty()) {
-							// DEBUG
-							// if (!parent.equals(rootConcept))
-							System.out.printf("%s\t->\t%s\tat\tdeepness %d\n", parent, child, childDeepness);
-							// for each child add the adapted edgesToAdapt
-							ArrayList<StringEdge> parentEdgesAdapted = replaceSourceOrTarget(parentEdges, parent, child);
-							// update graph with new edges
-							smpLock.writeLock().lock();
-							graph.addEdges(parentEdgesAdapted);
-							smpLock.writeLock().unlock();
-						}
-					}
-				}
-			}
-		}
+	public static void propagateRelationsThroughInheritance(StringGraph graph) throws InterruptedException {
+		new InheritancePropagator().propagate(graph);
 	}
 
-	private static ArrayList<StringEdge> replaceSourceOrTarget(ArrayList<StringEdge> edges, String parent, String child) {
-		ArrayList<StringEdge> resultingEdges = new ArrayList<StringEdge>();
-		for (StringEdge oldEdge : edges) {
-			StringEdge newEdge = oldEdge.replaceSourceOrTarget(parent, child);
-			resultingEdges.add(newEdge);
-		}
-		return resultingEdges;
+	public static void propagateRelationsThroughInheritance(StringGraph graph, String rootConcept, int maximumDeepness) throws InterruptedException {
+		InheritancePropagator propagator = new InheritancePropagator(Arrays.asList(InheritancePropagator.DEFAULT_RELATIONS), maximumDeepness);
+		propagator.propagate(graph, Collections.singleton(rootConcept));
 	}
 
 	/**
@@ -1671,13 +1592,24 @@ public class GraphAlgorithms {
 
 	public static void printVertexDegreeIsa(StringGraph kb) {
 		ObjectCounter<String> degrees = new ObjectCounter<>();
-		for (String concept : kb.getVertexSet()) {
-			degrees.addObject(concept, kb.edgesOf(concept, "isa").size());
+		if (kb.isDegreeIndexEnabled()) {
+			DegreeBucketQueue isaDegrees = kb.getDegreeIndex().getDegrees("isa");
+			for (String concept : kb.getVertexSet()) {
+				degrees.addObject(concept, isaDegrees.degreeOf(concept));
+			}
+		} else {
+			for (String concept : kb.getVertexSet()) {
+				degrees.addObject(concept, kb.edgesOf(concept, "isa").size());
+			}
 		}
 		degrees.toSystemOut(2);
 	}
 
 	public static void removeVerticesHighIsaDegree(StringGraph kb, int lowerDegreeThreshold) {
+		if (kb.isDegreeIndexEnabled() && lowerDegreeThreshold > 0) {
+			kb.removeVertices(kb.getDegreeIndex().getDegrees("isa").getVerticesWithDegreeAtLeast(lowerDegreeThreshold));
+			return;
+		}
 		ArrayList<String> toRemove = new ArrayList<>();
 		for (String concept : kb.getVertexSet()) {
 			int isaDegree = kb.edgesOf(concept, "isa").size();
@@ -0,0 +1,263 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+import structures.ListOfSet;
+import structures.ObjectIndex;
+
+/**
+ * Connected (weakly, edge direction is ignored) components of a StringGraph using a disjoint-set union (union-find) over vertex ids given by an ObjectIndex.
+ * The union-find is lock-free (roots are linked with CAS, the higher id under the lower one) so the edges can be processed in parallel. Edges can be added
+ * incrementally afterwards. Components are returned as arrays of vertex ids, largest first.
+ *
+ * @author jcfgonc@gmail.com
+ */
+public class GraphComponents {
+	private static final int DEFAULT_CAPACITY = 16;
+	// edges processed by each parallel task
+	private static final int PARALLEL_CHUNK_SIZE = 1 << 14;
+	private ObjectIndex<String> vertexIds;
+	private AtomicIntegerArray parent;
+	private int numberOfVertices;
+	// cached result, null if edges were added since
+	private int[][] components;
+
+	public GraphComponents() {
+		vertexIds = new ObjectIndex<>();
+		parent = new AtomicIntegerArray(DEFAULT_CAPACITY);
+		numberOfVertices = 0;
+	}
+
+	public GraphComponents(StringGraph graph) {
+		this(graph, false);
+	}
+
+	/**
+	 * Computes the components of the given graph, processing its edges with all the available cores if parallel is true.
+	 *
+	 * @param graph
+	 * @param parallel
+	 */
+	public GraphComponents(StringGraph graph, boolean parallel) {
+		int nVertices = graph.numberOfVertices();
+		vertexIds = new ObjectIndex<>(nVertices * 2);
+		parent = new AtomicIntegerArray(Math.max(DEFAULT_CAPACITY, nVertices));
+		numberOfVertices = 0;
+		// isolated vertices do not exist in a StringGraph, every vertex has an edge
+		int nEdges = graph.numberOfEdges();
+		int[] sources = new int[nEdges];
+		int[] targets = new int[nEdges];
+		int i = 0;
+		for (StringEdge edge : graph.edgeSet()) {
+			sources[i] = addVertex(edge.getSource());
+			targets[i] = addVertex(edge.getTarget());
+			i++;
+		}
+		if (parallel && nEdges > PARALLEL_CHUNK_SIZE) {
+			int chunks = (nEdges + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+			IntStream.range(0, chunks).parallel().forEach(chunk -> {
+				int end = Math.min(nEdges, (chunk + 1) * PARALLEL_CHUNK_SIZE);
+				for (int j = chunk * PARALLEL_CHUNK_SIZE; j < end; j++) {
+					union(sources[j], targets[j]);
+				}
+			});
+		} else {
+			for (int j = 0; j < nEdges; j++) {
+				union(sources[j], targets[j]);
+			}
+		}
+	}
+
+	/**
+	 * returns the id of the given vertex, adding it as a singleton component if new
+	 */
+	private int addVertex(String vertex) {
+		if (vertexIds.containsObject(vertex))
+			return vertexIds.getObjectId(vertex);
+		int id = vertexIds.addObject(vertex);
+		if (id >= parent.length()) {
+			// grow, only done by a single thread
+			AtomicIntegerArray grown = new AtomicIntegerArray(parent.length() * 2);
+			for (int i = 0; i < numberOfVertices; i++) {
+				grown.set(i, parent.get(i));
+			}
+			parent = grown;
+		}
+		parent.set(id, id);
+		numberOfVertices++;
+		return id;
+	}
+
+	/**
+	 * returns the root (representative) of the given id's set, halving the path on the way
+	 *
+	 * @param id
+	 * @return
+	 */
+	private int find(int id) {
+		while (true) {
+			int p = parent.get(id);
+			if (p == id)
+				return id;
+			int gp = parent.get(p);
+			if (gp != p) {
+				parent.compareAndSet(id, p, gp);
+			}
+			id = gp;
+		}
+	}
+
+	/**
+	 * merges the sets of both ids, thread-safe
+	 */
+	private void union(int a, int b) {
+		while (true) {
+			a = find(a);
+			b = find(b);
+			if (a == b)
+				return;
+			// ids give a total order, linking the higher under the lower never creates a cycle
+			if (a < b) {
+				int t = a;
+				a = b;
+				b = t;
+			}
+			if (parent.compareAndSet(a, a, b))
+				return;
+		}
+	}
+
+	/**
+	 * Incrementally adds the given edge (NOT thread-safe), merging the components of its vertices.
+	 *
+	 * @param edge
+	 */
+	public void addEdge(StringEdge edge) {
+		addEdge(edge.getSource(), edge.getTarget());
+	}
+
+	public void addEdge(String source, String target) {
+		union(addVertex(source), addVertex(target));
+		components = null;
+	}
+
+	public int numberOfVertices() {
+		return numberOfVertices;
+	}
+
+	public int numberOfComponents() {
+		return getComponents().length;
+	}
+
+	public int getVertexId(String vertex) {
+		if (!vertexIds.containsObject(vertex))
+			return -1;
+		return vertexIds.getObjectId(vertex);
+	}
+
+	public String getVertex(int id) {
+		return vertexIds.getObject(id);
+	}
+
+	/**
+	 * returns true if both vertices exist and are in the same component
+	 *
+	 * @param v0
+	 * @param v1
+	 * @return
+	 */
+	public boolean areConnected(String v0, String v1) {
+		int id0 = getVertexId(v0);
+		int id1 = getVertexId(v1);
+		if (id0 < 0 || id1 < 0)
+			return false;
+		return find(id0) == find(id1);
+	}
+
+	/**
+	 * UNSAFE, returns the components as arrays of vertex ids, largest component first
+	 *
+	 * @return
+	 */
+	public int[][] getComponents() {
+		if (components != null)
+			return components;
+		// count vertices per root
+		int[] root = new int[numberOfVertices];
+		int[] count = new int[numberOfVertices];
+		for (int id = 0; id < numberOfVertices; id++) {
+			root[id] = find(id);
+			count[root[id]]++;
+		}
+		int nComponents = 0;
+		for (int id = 0; id < numberOfVertices; id++) {
+			if (count[id] > 0)
+				nComponents++;
+		}
+		// order the roots by decreasing size
+		Integer[] roots = new Integer[nComponents];
+		int n = 0;
+		for (int id = 0; id < numberOfVertices; id++) {
+			if (count[id] > 0)
+				roots[n++] = id;
+		}
+		Arrays.sort(roots, (r0, r1) -> Integer.compare(count[r1], count[r0]));
+		// root -> component index
+		int[] componentOf = new int[numberOfVertices];
+		int[][] result = new int[nComponents][];
+		for (int c = 0; c < nComponents; c++) {
+			componentOf[roots[c]] = c;
+			result[c] = new int[count[roots[c]]];
+		}
+		int[] filled = new int[nComponents];
+		for (int id = 0; id < numberOfVertices; id++) {
+			int c = componentOf[root[id]];
+			result[c][filled[c]++] = id;
+		}
+		components = result;
+		return components;
+	}
+
+	/**
+	 * UNSAFE, returns the vertex ids of the i-th largest component
+	 *
+	 * @param i
+	 * @return
+	 */
+	public int[] getComponent(int i) {
+		return getComponents()[i];
+	}
+
+	/**
+	 * SAFE, returns the vertices of the i-th largest component
+	 *
+	 * @param i
+	 * @return
+	 */
+	public HashSet<String> getComponentVertices(int i) {
+		int[] component = getComponent(i);
+		HashSet<String> vertices = new HashSet<>(component.length * 2);
+		for (int id : component) {
+			vertices.add(vertexIds.getObject(id));
+		}
+		return vertices;
+	}
+
+	/**
+	 * SAFE, returns the components as sets of vertices, largest component first
+	 *
+	 * @return
+	 */
+	public ListOfSet<String> toListOfSet() {
+		ListOfSet<String> list = new ListOfSet<>();
+		int nComponents = numberOfComponents();
+		for (int i = 0; i < nComponents; i++) {
+			list.add(getComponentVertices(i));
+		}
+		return list;
+	}
+
+}
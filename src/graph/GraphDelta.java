@@ -0,0 +1,71 @@
+package graph;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The net changes (edges added and removed) made to a StringGraph between two of its versions. An edge added and later removed (or vice-versa) within the
+ * interval is not reported.
+ *
+ * @author jcfgonc@gmail.com
+ */
+public class GraphDelta {
+	private final long fromVersion;
+	private final long toVersion;
+	private final HashSet<StringEdge> addedEdges = new HashSet<>();
+	private final HashSet<StringEdge> removedEdges = new HashSet<>();
+
+	GraphDelta(long fromVersion, long toVersion) {
+		this.fromVersion = fromVersion;
+		this.toVersion = toVersion;
+	}
+
+	void edgeAdded(StringEdge edge) {
+		// re-added after being removed
+		if (!removedEdges.remove(edge))
+			addedEdges.add(edge);
+	}
+
+	void edgeRemoved(StringEdge edge) {
+		// removed after being added
+		if (!addedEdges.remove(edge))
+			removedEdges.add(edge);
+	}
+
+	public long getFromVersion() {
+		return fromVersion;
+	}
+
+	public long getToVersion() {
+		return toVersion;
+	}
+
+	/**
+	 * SAFE, edges added after fromVersion and present at toVersion
+	 * 
+	 * @return
+	 */
+	public Set<StringEdge> getAddedEdges() {
+		return Collections.unmodifiableSet(addedEdges);
+	}
+
+	/**
+	 * SAFE, edges present at fromVersion and removed afterwards
+	 * 
+	 * @return
+	 */
+	public Set<StringEdge> getRemovedEdges() {
+		return Collections.unmodifiableSet(removedEdges);
+	}
+
+	public boolean isEmpty() {
+		return addedEdges.isEmpty() && removedEdges.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "GraphDelta [" + fromVersion + "->" + toVersion + ", added=" + addedEdges.size() + ", removed=" + removedEdges.size() + "]";
+	}
+
+}
@@ -7,10 +7,7 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.io.StringReader;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -26,6 +23,7 @@ import java.util.regex.Pattern;
 
 import structures.ObjectIndex;
 import structures.Ticker;
+import utils.CompressedFiles;
 import utils.NonblockingBufferedReader;
 import utils.VariousUtils;
 
@@ -111,16 +109,31 @@ public class GraphReadWrite {
 		return edges;
 	}
 
+	/**
+	 * Reads the graph in the format given by the file's extension. Gzip and zip compressed files (kb.csv.gz, kb.tgf.zip, ...) are decompressed on the fly, see
+	 * CompressedFiles.
+	 *
+	 * @param filename
+	 * @param graph
+	 * @return
+	 * @throws IOException
+	 */
 	public static StringGraph readAutoDetect(String filename, StringGraph graph) throws IOException {
-		String extension = filename.substring(filename.lastIndexOf(".") + 1);
+		String extension = CompressedFiles.getExtension(filename);
 		if (extension.equalsIgnoreCase("csv")) {
 			readCSV(filename, graph);
+		} else if (extension.equalsIgnoreCase("tsv")) {
+			readTSV(filename, graph);
 		} else if (extension.equalsIgnoreCase("dt")) {
 			readDivago(filename, graph);
 		} else if (extension.equalsIgnoreCase("tgf")) {
 			readTGF(filename, graph);
 		} else if (extension.equalsIgnoreCase("pro") || extension.equalsIgnoreCase("pl")) {
 			readProlog(filename, graph);
+		} else if (extension.equalsIgnoreCase(BinaryGraphReadWrite.EXTENSION)) {
+			if (CompressedFiles.isCompressed(filename))
+				throw new IOException("compressed " + BinaryGraphReadWrite.EXTENSION + " files are not supported, they are memory-mapped: " + filename);
+			BinaryGraphReadWrite.read(filename, graph);
 		} else {
 			System.err.println("unknown file extension: " + extension);
 			System.exit(-1);
@@ -136,18 +149,18 @@ public class GraphReadWrite {
 
 	public static StringGraph readCSV(String filename, StringGraph graph) throws IOException, NoSuchFileException {
 		System.out.print("reading " + filename + " ...");
-		BufferedReader br = Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8);
-		readCSV(br, graph);
-		br.close();
+		ParallelCSVReader.read(filename, graph);
 		System.out.println("done.");
 		return graph;
 	}
 
 	public static StringGraph readTSV(String filename, StringGraph graph) throws IOException, NoSuchFileException {
 		System.out.print("reading " + filename + " ...");
-		BufferedReader br = Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8);
-		while (br.ready()) {
+		BufferedReader br = CompressedFiles.newBufferedReader(filename);
+		while (true) {
 			String line = br.readLine();
+			if (line == null)
+				break;
 
 			String[] tokens = VariousUtils.fastSplit(line, '\t');
 			int ntokens = tokens.length;
@@ -281,7 +294,7 @@ public class GraphReadWrite {
 	}
 
 	/**
-	 * PS nao sei se isto suporta UTF8
+	 * Same as ParallelCSVReader.read().
 	 * 
 	 * @param filename
 	 * @param graph
@@ -290,67 +303,13 @@ public class GraphReadWrite {
 	 */
 	@Deprecated
 	public static void readCSV_highPerformance(String filename, StringGraph graph) throws IOException {
-		System.err.println("CUIDADO COM OS ENCODINGS...");
-
-		RandomAccessFile aFile = new RandomAccessFile(filename, "r");
-		FileChannel inChannel = aFile.getChannel();
-		MappedByteBuffer byteBuffer = inChannel.map(FileChannel.MapMode.READ_ONLY, 0, inChannel.size());
-		byteBuffer.load();
-
-		char[] charBuffer = CHARSET_UTF_8.decode(byteBuffer).array();
-		int n = charBuffer.length;
-
-		int state = 0;
-		int i = 0;
-		int j = 0;
-
-		String source = null;
-		String target = null;
-		String relation = null;
-
-		while (i < n) {
-			if (state == 0) {
-				j = indexOf(',', charBuffer, i, n);
-				if (j < 0)
-					break;
-				source = new String(charBuffer, i, j - i);
-				i = j + 1;
-			} else if (state == 1) {
-				j = indexOf(',', charBuffer, i, n);
-				if (j < 0)
-					break;
-				relation = new String(charBuffer, i, j - i);
-				i = j + 1;
-			} else if (state == 2) {
-				j = indexOf('\n', charBuffer, i, n);
-				if (j < 0)
-					break;
-				if (charBuffer[j - 1] == '\r') {
-					target = new String(charBuffer, i, j - i - 1);
-				} else {
-					target = new String(charBuffer, i, j - i);
-				}
-				i = j + 1;
-
-				StringEdge edge = new StringEdge(source, target, relation);
-				graph.addEdge(edge);
-			}
-
-			state++;
-			if (state > 2)
-				state = 0;
-		}
-
-		byteBuffer.clear(); // do something with the data and clear/compact it.
-		inChannel.close();
-		aFile.close();
-
+		ParallelCSVReader.read(filename, graph);
 	}
 
 	public static void readDivago(BufferedReader br, StringGraph graph) throws IOException {
 		// :- multifile r/4, neg/4, arc/5, rule/6, frame/6, integrity/3.
 		// r(bird,group,call,call).
-		while (br.ready()) {
+		while (true) {
 			String line = br.readLine();
 			if (line == null)
 				break;
@@ -375,7 +334,7 @@ public class GraphReadWrite {
 	}
 
 	public static void readDivago(File file, StringGraph graph) throws IOException {
-		BufferedReader br = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8));
+		BufferedReader br = CompressedFiles.newBufferedReader(file.getPath());
 		readDivago(br, graph);
 		br.close();
 	}
@@ -415,8 +374,7 @@ public class GraphReadWrite {
 	}
 
 	public static StringGraph readProlog(File file, StringGraph graph) throws IOException {
-		FileReader fr = new FileReader(file, StandardCharsets.UTF_8);
-		BufferedReader br = new BufferedReader(fr);
+		BufferedReader br = CompressedFiles.newBufferedReader(file.getPath());
 		try {
 			return readProlog(br, graph);
 		} finally {
@@ -432,7 +390,7 @@ public class GraphReadWrite {
 		// because TGF uses indices to reference vertice labels in the edges
 		HashMap<String, String> nodeLabels = new HashMap<>();
 		boolean gettingnodes = true;
-		while (br.ready()) {
+		while (true) {
 			String line = br.readLine();
 			if (line == null)
 				break;
@@ -473,7 +431,7 @@ public class GraphReadWrite {
 	}
 
 	public static StringGraph readTGF(File file, StringGraph graph) throws IOException {
-		BufferedReader br = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8));
+		BufferedReader br = CompressedFiles.newBufferedReader(file.getPath());
 		readTGF(br, graph);
 		br.close();
 		return graph;
@@ -483,13 +441,33 @@ public class GraphReadWrite {
 		return readTGF(new File(filename), graph);
 	}
 
-	private static String removeComma(String label) {
-		String result = label.replace(",", "_"); // as specified by prof.
-													// amilcar
-		result = result.replace(" ", "_"); // in case the comma wasn't removed
-											// previously
-		result = result.replaceAll("_+", "_"); // remove multiple underscore
-		return result;
+	static String removeComma(String label) {
+		// commas as specified by prof. amilcar, spaces in case the comma wasn't removed previously, each run of them (and of underscores) becomes a single
+		// underscore. Single pass, the label is returned as is if unchanged.
+		int length = label.length();
+		StringBuilder sb = null;
+		boolean inRun = false;
+		for (int i = 0; i < length; i++) {
+			char c = label.charAt(i);
+			boolean separator = c == ',' || c == ' ' || c == '_';
+			if (sb == null) {
+				if (!(separator && (c != '_' || inRun))) {
+					inRun = separator;
+					continue;
+				}
+				// first change, copy the unchanged prefix
+				sb = new StringBuilder(length);
+				sb.append(label, 0, i);
+			}
+			if (separator) {
+				if (!inRun)
+					sb.append('_');
+			} else {
+				sb.append(c);
+			}
+			inRun = separator;
+		}
+		return sb == null ? label : sb.toString();
 	}
 
 	public static <V, E> void writeCSV(BufferedWriter out, DirectedMultiGraph<V, E> graph) throws IOException {
@@ -515,9 +493,7 @@ public class GraphReadWrite {
 	}
 
 	public static <V, E> void writeCSV(String filename, Collection<StringEdge> edges) throws IOException {
-		BufferedWriter out = Files.newBufferedWriter(Paths.get(filename), StandardCharsets.UTF_8);
-		writeCSV(out, edges);
-		out.close();
+		ParallelGraphWriter.writeCSV(filename, edges, false);
 	}
 
 	public static void writeCSV(BufferedWriter bw, Collection<StringEdge> edges) throws IOException {
@@ -541,27 +517,11 @@ public class GraphReadWrite {
 	}
 
 	public static void writeCSV(String filename, StringGraph graph) throws IOException {
-		BufferedWriter out = Files.newBufferedWriter(Paths.get(filename), StandardCharsets.UTF_8);
-		writeCSV(out, graph);
-		out.close();
+		ParallelGraphWriter.writeCSV(filename, graph, false);
 	}
 
 	public static void writeTSV(String filename, StringGraph graph) throws IOException {
-		BufferedWriter bw = Files.newBufferedWriter(Paths.get(filename), StandardCharsets.UTF_8);
-		for (StringEdge se : graph.edgeSet()) {
-			String source = se.getSource();
-			String target = se.getTarget();
-			String edgeLabel = se.getLabel();
-
-			bw.write(source);
-			bw.write('\t');
-			bw.write(edgeLabel);
-			bw.write('\t');
-			bw.write(target);
-			bw.newLine();
-		}
-		bw.flush();
-		bw.close();
+		ParallelGraphWriter.writeTSV(filename, graph, false);
 	}
 
 	public static void writeDT(BufferedWriter bw, StringGraph graph, String namespace) throws IOException {
@@ -580,9 +540,7 @@ public class GraphReadWrite {
 	}
 
 	public static void writeDT(File file, StringGraph graph, String namespace) throws IOException {
-		BufferedWriter bw = new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8));
-		writeDT(bw, graph, namespace);
-		bw.close();
+		ParallelGraphWriter.writeDT(file.getPath(), graph.edgeSet(), namespace, false);
 	}
 
 	public static void writeDT(String filename, StringGraph graph, String namespace) throws IOException {
@@ -602,9 +560,7 @@ public class GraphReadWrite {
 	}
 
 	public static void writePRO(File file, StringGraph graph) throws IOException {
-		BufferedWriter bw = new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8));
-		writePRO(bw, graph);
-		bw.close();
+		ParallelGraphWriter.writePRO(file.getPath(), graph.edgeSet(), false);
 	}
 
 	public static void writePRO(String filename, StringGraph graph) throws IOException {
@@ -694,9 +650,7 @@ public class GraphReadWrite {
 	}
 
 	public static void writeTGF(File file, StringGraph graph) throws IOException {
-		BufferedWriter bw = new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8));
-		writeTGF(bw, graph);
-		bw.close();
+		ParallelGraphWriter.writeTGF(file.getPath(), graph, false);
 	}
 
 	public static <V, E> void writeTGF(String filename, DirectedMultiGraph<V, E> graph) throws IOException {
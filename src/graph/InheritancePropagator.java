@@ -0,0 +1,206 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import stream.StreamProcessor;
+import stream.StreamService;
+import structures.Ticker;
+import utils.OSTools;
+
+/**
+ * Propagates the relations of each concept to the concepts which inherit from it (isa), going down the ISA hierarchy level by level from the given roots.
+ * Each level's parents are split among the threads, each thread computing its children's inherited edges in its own buffer. The graph is only read while a
+ * level is processed and the buffers are merged into it once per level, so the next level inherits the edges propagated in this one. A child with more than
+ * one parent in the same level inherits from all of them. Each concept is visited once, at the shallowest level it is reached.
+ *
+ * @author jcfgonc@gmail.com
+ */
+public class InheritancePropagator {
+	/**
+	 * the relations propagated by default
+	 */
+	public static final String[] DEFAULT_RELATIONS = { "capableof", "isa", "causes", "atlocation", "desires", "usedto", "partof", "madeof", "requires", "symbolof",
+			"createdby" };
+	private Set<String> relations;
+	private int maximumDepth;
+	private int numberOfThreads;
+	private boolean verbose;
+
+	public InheritancePropagator() {
+		this(Arrays.asList(DEFAULT_RELATIONS), 8);
+	}
+
+	/**
+	 * @param relations    the relations of a parent which are copied to its children
+	 * @param maximumDepth children at this depth (or deeper) from the roots do not inherit, roots being at depth 0
+	 */
+	public InheritancePropagator(Collection<String> relations, int maximumDepth) {
+		this.relations = new HashSet<>(relations);
+		this.maximumDepth = maximumDepth;
+		this.numberOfThreads = OSTools.getNumberOfLogicalProcessors();
+		this.verbose = false;
+	}
+
+	public Set<String> getRelations() {
+		return relations;
+	}
+
+	public void setRelations(Collection<String> relations) {
+		this.relations = new HashSet<>(relations);
+	}
+
+	public int getMaximumDepth() {
+		return maximumDepth;
+	}
+
+	public void setMaximumDepth(int maximumDepth) {
+		this.maximumDepth = maximumDepth;
+	}
+
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+
+	public void setNumberOfThreads(int numberOfThreads) {
+		if (numberOfThreads <= 0)
+			throw new IllegalArgumentException("InheritancePropagator called with " + numberOfThreads + " number of threads");
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	/**
+	 * if true prints a line per level and the totals with the throughput (edges/s)
+	 *
+	 * @param verbose
+	 */
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+
+	/**
+	 * Propagates the relations starting at the roots of the graph's ISA hierarchy (see GraphAlgorithms.findRootIsaConcepts()).
+	 *
+	 * @param graph
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public ArrayList<StringEdge> propagate(StringGraph graph) throws InterruptedException {
+		return propagate(graph, GraphAlgorithms.findRootIsaConcepts(graph));
+	}
+
+	/**
+	 * Propagates the relations starting at the given roots, adding the inherited edges to the graph. Returns the edges added to the graph.
+	 *
+	 * @param graph
+	 * @param roots
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public ArrayList<StringEdge> propagate(StringGraph graph, Collection<String> roots) throws InterruptedException {
+		Ticker ticker = new Ticker();
+		ArrayList<StringEdge> addedEdges = new ArrayList<>();
+		HashSet<String> visited = new HashSet<>(roots);
+		ArrayList<String> frontier = new ArrayList<>(visited);
+		// one buffer of inherited edges and one of children per thread
+		ArrayList<ArrayList<StringEdge>> edgeBuffers = new ArrayList<>(numberOfThreads);
+		ArrayList<ArrayList<String>> childBuffers = new ArrayList<>(numberOfThreads);
+		for (int i = 0; i < numberOfThreads; i++) {
+			edgeBuffers.add(new ArrayList<>());
+			childBuffers.add(new ArrayList<>());
+		}
+		// StreamService swallows the exceptions of the threads, these are checked after each level
+		boolean[] completed = new boolean[numberOfThreads];
+		RuntimeException[] errors = new RuntimeException[numberOfThreads];
+		StreamService ss = new StreamService(numberOfThreads);
+		try {
+			int childDepth = 1;
+			while (!frontier.isEmpty() && childDepth < maximumDepth) {
+				Ticker levelTicker = new Ticker();
+				ArrayList<String> parents = frontier;
+				StreamProcessor sp = new StreamProcessor() {
+
+					@Override
+					public void run(int processorId, int rangeL, int rangeH, int streamSize) {
+						ArrayList<StringEdge> edgeBuffer = edgeBuffers.get(processorId);
+						ArrayList<String> childBuffer = childBuffers.get(processorId);
+						try {
+							for (int i = rangeL; i <= rangeH; i++) {
+								inherit(graph, parents.get(i), visited, edgeBuffer, childBuffer);
+							}
+							completed[processorId] = true;
+						} catch (RuntimeException e) {
+							errors[processorId] = e;
+						}
+					}
+				};
+				Arrays.fill(completed, false);
+				ss.invoke(parents.size(), sp);
+				for (int i = 0; i < numberOfThreads; i++) {
+					if (errors[i] != null)
+						throw errors[i];
+					if (!completed[i])
+						throw new RuntimeException("InheritancePropagator: thread " + i + " failed at depth " + childDepth);
+				}
+
+				// merge the buffers, in thread order
+				ArrayList<StringEdge> levelEdges = new ArrayList<>();
+				HashSet<StringEdge> levelEdgeSet = new HashSet<>();
+				frontier = new ArrayList<>();
+				for (int i = 0; i < numberOfThreads; i++) {
+					for (StringEdge edge : edgeBuffers.get(i)) {
+						// loops come from parent edges pointing to the child
+						if (!edge.isLoop() && !graph.containsEdge(edge) && levelEdgeSet.add(edge))
+							levelEdges.add(edge);
+					}
+					for (String child : childBuffers.get(i)) {
+						if (visited.add(child))
+							frontier.add(child);
+					}
+					edgeBuffers.get(i).clear();
+					childBuffers.get(i).clear();
+				}
+				graph.addEdges(levelEdges);
+				addedEdges.addAll(levelEdges);
+				if (verbose) {
+					double time = levelTicker.getElapsedTime();
+					System.out.printf("depth %d: %d parents, %d children, %d edges in %.3f s (%.0f edges/s)\n", childDepth, parents.size(), frontier.size(),
+							levelEdges.size(), time, levelEdges.size() / time);
+				}
+				childDepth++;
+			}
+		} finally {
+			ss.shutdown();
+		}
+		if (verbose) {
+			double time = ticker.getElapsedTime();
+			System.out.printf("propagated %d edges to %d concepts in %.3f s (%.0f edges/s)\n", addedEdges.size(), visited.size(), time, addedEdges.size() / time);
+		}
+		return addedEdges;
+	}
+
+	/**
+	 * adds to the buffers the edges inherited by the unvisited children of the given parent and the children themselves. Only reads the graph and visited set.
+	 */
+	private void inherit(StringGraph graph, String parent, Set<String> visited, ArrayList<StringEdge> edgeBuffer, ArrayList<String> childBuffer) {
+		Set<StringEdge> isaEdges = graph.incomingEdgesOf(parent, "isa");
+		if (isaEdges.isEmpty())
+			return;
+		ArrayList<StringEdge> parentEdges = new ArrayList<>();
+		for (String relation : relations) {
+			parentEdges.addAll(graph.outgoingEdgesOf(parent, relation));
+		}
+		for (StringEdge isaEdge : isaEdges) {
+			String child = isaEdge.getSource();
+			if (visited.contains(child))
+				continue;
+			childBuffer.add(child);
+			for (StringEdge parentEdge : parentEdges) {
+				edgeBuffer.add(parentEdge.replaceSourceOrTarget(parent, child));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,359 @@
+package graph;
+
+import java.util.Collection;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import structures.ObjectIndex;
+
+/**
+ * High Performance Directed MultiGraph without edge objects. Nodes/vertices are integers (id>=0) and edge labels are integers (id>=0), such as the ones
+ * given by an ObjectIndex. Each edge is stored twice as a packed long: (label,target) in the outgoing set of the source and (label,source) in the incoming set
+ * of the target. Edges are iterated with the forEach*() functions, without boxing.
+ *
+ * @author jcfgonc@gmail.com
+ */
+public class IntPackedDirectedMultiGraph {
+	private static final int DEFAULT_ADJACENCY_SIZE = 2;
+	private Int2ObjectOpenHashMap<LongOpenHashSet> incomingEdges;
+	private Int2ObjectOpenHashMap<LongOpenHashSet> outgoingEdges;
+	private int numberOfEdges;
+
+	public IntPackedDirectedMultiGraph() {
+		clear();
+	}
+
+	public IntPackedDirectedMultiGraph(int numVertices) {
+		incomingEdges = new Int2ObjectOpenHashMap<>(numVertices);
+		outgoingEdges = new Int2ObjectOpenHashMap<>(numVertices);
+		numberOfEdges = 0;
+	}
+
+	public IntPackedDirectedMultiGraph(IntPackedDirectedMultiGraph other) {
+		this(other.numberOfVertices());
+		for (Int2ObjectMap.Entry<LongOpenHashSet> entry : other.outgoingEdges.int2ObjectEntrySet()) {
+			outgoingEdges.put(entry.getIntKey(), new LongOpenHashSet(entry.getValue()));
+		}
+		for (Int2ObjectMap.Entry<LongOpenHashSet> entry : other.incomingEdges.int2ObjectEntrySet()) {
+			incomingEdges.put(entry.getIntKey(), new LongOpenHashSet(entry.getValue()));
+		}
+		numberOfEdges = other.numberOfEdges;
+	}
+
+	public void clear() {
+		incomingEdges = new Int2ObjectOpenHashMap<>();
+		outgoingEdges = new Int2ObjectOpenHashMap<>();
+		numberOfEdges = 0;
+	}
+
+	/**
+	 * Packs the given label and vertex in a long, label in the upper 32 bits.
+	 *
+	 * @param label
+	 * @param vertex
+	 * @return
+	 */
+	public static long packEdge(int label, int vertex) {
+		return ((long) label << 32) | (vertex & 0xFFFFFFFFL);
+	}
+
+	public static int unpackLabel(long packed) {
+		return (int) (packed >>> 32);
+	}
+
+	public static int unpackVertex(long packed) {
+		return (int) packed;
+	}
+
+	/**
+	 * adds the given labeled edge between two vertices, returning true if successfully added it
+	 *
+	 * @param source
+	 * @param target
+	 * @param label
+	 * @return
+	 */
+	public boolean addEdge(int source, int target, int label) {
+		assert (source >= 0);
+		assert (target >= 0);
+		assert (label >= 0);
+
+		if (source == target) {
+			System.err.printf("LOOP: %s,%s,%s\n", source, label, target);
+			return false;
+		}
+
+		if (containsEdge(target, source, label)) {
+			System.err.printf("SYMMETRY: %s,%s,%s\n", source, label, target);
+			return false;
+		}
+
+		if (!getOrCreate(outgoingEdges, source).add(packEdge(label, target)))
+			return false;
+		getOrCreate(incomingEdges, target).add(packEdge(label, source));
+		numberOfEdges++;
+		return true;
+	}
+
+	private static LongOpenHashSet getOrCreate(Int2ObjectOpenHashMap<LongOpenHashSet> map, int vertex) {
+		LongOpenHashSet set = map.get(vertex);
+		if (set == null) {
+			set = new LongOpenHashSet(DEFAULT_ADJACENCY_SIZE);
+			map.put(vertex, set);
+		}
+		return set;
+	}
+
+	public boolean containsEdge(int source, int target, int label) {
+		LongOpenHashSet out = outgoingEdges.get(source);
+		if (out == null)
+			return false;
+		return out.contains(packEdge(label, target));
+	}
+
+	public boolean containsVertex(int vertex) {
+		return outgoingEdges.containsKey(vertex) || incomingEdges.containsKey(vertex);
+	}
+
+	public int inDegreeOf(int vertex) {
+		LongOpenHashSet in = incomingEdges.get(vertex);
+		if (in == null)
+			return 0;
+		return in.size();
+	}
+
+	public int outDegreeOf(int vertex) {
+		LongOpenHashSet out = outgoingEdges.get(vertex);
+		if (out == null)
+			return 0;
+		return out.size();
+	}
+
+	public int degreeOf(int vertex) {
+		return inDegreeOf(vertex) + outDegreeOf(vertex);
+	}
+
+	public int numberOfEdges() {
+		return numberOfEdges;
+	}
+
+	public int numberOfVertices() {
+		int count = outgoingEdges.size();
+		for (int vertex : incomingEdges.keySet()) {
+			if (!outgoingEdges.containsKey(vertex))
+				count++;
+		}
+		return count;
+	}
+
+	public boolean isEmpty() {
+		return numberOfEdges == 0;
+	}
+
+	/**
+	 * SAFE, local copy.
+	 *
+	 * @return
+	 */
+	public IntOpenHashSet getVertexSet() {
+		IntOpenHashSet vertexSet = new IntOpenHashSet(outgoingEdges.keySet());
+		vertexSet.addAll(incomingEdges.keySet());
+		return vertexSet;
+	}
+
+	/**
+	 * Invokes the consumer with (source, label, target) for each edge leaving the given vertex.
+	 *
+	 * @param vertex
+	 * @param consumer
+	 */
+	public void forEachOutgoing(int vertex, IntTriConsumer consumer) {
+		LongOpenHashSet out = outgoingEdges.get(vertex);
+		if (out == null)
+			return;
+		LongIterator it = out.iterator();
+		while (it.hasNext()) {
+			long packed = it.nextLong();
+			consumer.accept(vertex, unpackLabel(packed), unpackVertex(packed));
+		}
+	}
+
+	/**
+	 * Invokes the consumer with (source, label, target) for each edge leaving the given vertex with the given label.
+	 *
+	 * @param vertex
+	 * @param label
+	 * @param consumer
+	 */
+	public void forEachOutgoing(int vertex, int label, IntTriConsumer consumer) {
+		forEachOutgoing(vertex, (s, l, t) -> {
+			if (l == label)
+				consumer.accept(s, l, t);
+		});
+	}
+
+	/**
+	 * Invokes the consumer with (source, label, target) for each edge arriving at the given vertex.
+	 *
+	 * @param vertex
+	 * @param consumer
+	 */
+	public void forEachIncoming(int vertex, IntTriConsumer consumer) {
+		LongOpenHashSet in = incomingEdges.get(vertex);
+		if (in == null)
+			return;
+		LongIterator it = in.iterator();
+		while (it.hasNext()) {
+			long packed = it.nextLong();
+			consumer.accept(unpackVertex(packed), unpackLabel(packed), vertex);
+		}
+	}
+
+	/**
+	 * Invokes the consumer with (source, label, target) for each edge arriving at the given vertex with the given label.
+	 *
+	 * @param vertex
+	 * @param label
+	 * @param consumer
+	 */
+	public void forEachIncoming(int vertex, int label, IntTriConsumer consumer) {
+		forEachIncoming(vertex, (s, l, t) -> {
+			if (l == label)
+				consumer.accept(s, l, t);
+		});
+	}
+
+	/**
+	 * Invokes the consumer with (source, label, target) for each edge touching (incoming and outgoing) the given vertex.
+	 *
+	 * @param vertex
+	 * @param consumer
+	 */
+	public void forEachEdgeOf(int vertex, IntTriConsumer consumer) {
+		forEachIncoming(vertex, consumer);
+		forEachOutgoing(vertex, consumer);
+	}
+
+	/**
+	 * Invokes the consumer with (source, label, target) for every edge of this graph.
+	 *
+	 * @param consumer
+	 */
+	public void forEachEdge(IntTriConsumer consumer) {
+		for (Int2ObjectMap.Entry<LongOpenHashSet> entry : outgoingEdges.int2ObjectEntrySet()) {
+			int source = entry.getIntKey();
+			LongIterator it = entry.getValue().iterator();
+			while (it.hasNext()) {
+				long packed = it.nextLong();
+				consumer.accept(source, unpackLabel(packed), unpackVertex(packed));
+			}
+		}
+	}
+
+	public boolean removeEdge(int source, int target, int label) {
+		LongOpenHashSet out = outgoingEdges.get(source);
+		if (out == null || !out.remove(packEdge(label, target)))
+			return false;
+		if (out.isEmpty())
+			outgoingEdges.remove(source);
+
+		LongOpenHashSet in = incomingEdges.get(target);
+		in.remove(packEdge(label, source));
+		if (in.isEmpty())
+			incomingEdges.remove(target);
+
+		numberOfEdges--;
+		return true;
+	}
+
+	public void removeVertex(int vertex) {
+		LongOpenHashSet out = outgoingEdges.remove(vertex);
+		if (out != null) {
+			LongIterator it = out.iterator();
+			while (it.hasNext()) {
+				long packed = it.nextLong();
+				removeFromSet(incomingEdges, unpackVertex(packed), packEdge(unpackLabel(packed), vertex));
+			}
+			numberOfEdges -= out.size();
+		}
+		LongOpenHashSet in = incomingEdges.remove(vertex);
+		if (in != null) {
+			LongIterator it = in.iterator();
+			while (it.hasNext()) {
+				long packed = it.nextLong();
+				removeFromSet(outgoingEdges, unpackVertex(packed), packEdge(unpackLabel(packed), vertex));
+			}
+			numberOfEdges -= in.size();
+		}
+	}
+
+	private static void removeFromSet(Int2ObjectOpenHashMap<LongOpenHashSet> map, int vertex, long packed) {
+		LongOpenHashSet set = map.get(vertex);
+		if (set == null)
+			return;
+		set.remove(packed);
+		if (set.isEmpty())
+			map.remove(vertex);
+	}
+
+	public void removeVertices(IntArrayList vertices) {
+		for (int v : vertices) {
+			removeVertex(v);
+		}
+	}
+
+	public void removeVertices(Collection<Integer> vertices) {
+		for (int v : vertices) {
+			removeVertex(v);
+		}
+	}
+
+	public void renameVertex(int original, int replacement) {
+		if (original == replacement)
+			return;
+		// remove old edges touching the old vertex while adding new edges with the replaced vertex
+		LongArrayList toAdd = new LongArrayList();
+		IntArrayList toAddSources = new IntArrayList();
+		forEachEdgeOf(original, (source, label, target) -> {
+			toAddSources.add(source == original ? replacement : source);
+			toAdd.add(packEdge(label, target == original ? replacement : target));
+		});
+		removeVertex(original);
+		for (int i = 0; i < toAdd.size(); i++) {
+			long packed = toAdd.getLong(i);
+			addEdge(toAddSources.getInt(i), unpackVertex(packed), unpackLabel(packed));
+		}
+	}
+
+	public void showStructureSizes() {
+		System.out.println("edges: " + numberOfEdges);
+		System.out.println("incomingEdges: " + incomingEdges.size());
+		System.out.println("outgoingEdges: " + outgoingEdges.size());
+	}
+
+	/**
+	 * Converts the given StringGraph, storing vertex and relation identifiers in the given indices.
+	 *
+	 * @param graph
+	 * @param vertexLabels
+	 * @param relationLabels
+	 * @return
+	 */
+	public static IntPackedDirectedMultiGraph convert(StringGraph graph, ObjectIndex<String> vertexLabels, ObjectIndex<String> relationLabels) {
+		IntPackedDirectedMultiGraph converted = new IntPackedDirectedMultiGraph(graph.numberOfVertices());
+		for (StringEdge edge : graph.edgeSet()) {
+			int sourceId = vertexLabels.addObject(edge.getSource());
+			int targetId = vertexLabels.addObject(edge.getTarget());
+			int relationId = relationLabels.addObject(edge.getLabel());
+
+			converted.addEdge(sourceId, targetId, relationId);
+		}
+		return converted;
+	}
+
+}
@@ -0,0 +1,11 @@
+package graph;
+
+/**
+ * Primitive (non boxing) consumer of integer encoded edges, invoked as (source, label, target).
+ *
+ * @author jcfgonc@gmail.com
+ */
+@FunctionalInterface
+public interface IntTriConsumer {
+	public void accept(int source, int label, int target);
+}
@@ -0,0 +1,702 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * Build-once index of the ISA hierarchy of a StringGraph (isa edges go from the child to the parent, derivedfrom and synonym edges are optionally followed
+ * in both directions) answering ancestor, lowest common ancestor and path queries without traversing the graph every time.
+ * <p>
+ * The strongly connected components (isa cycles and synonym/derivedfrom groups) are condensed into a DAG whose components are numbered in topological order
+ * (ancestors first). Each component has its depth (longest path from a root), two GRAIL-like reachability intervals computed from different depth first
+ * traversals of the DAG (if any interval of a component does not contain the descendant's, it is not an ancestor) and the interval of the first traversal's
+ * spanning forest (if it contains the descendant's, it is an ancestor). The remaining reachability queries are answered by a depth first search pruned by
+ * the intervals. A binary lifting table over the deepest parent of each component gives a common ancestor in O(log depth).
+ * <p>
+ * Queries are thread-safe, each thread keeping its own epoch-stamped visitation buffers. update() must not be called concurrently with queries.
+ *
+ * @author jcfgonc@gmail.com
+ */
+public class IsaHierarchyIndex {
+	private static final String ISA = "isa";
+	private static final String DERIVEDFROM = "derivedfrom";
+	private static final String SYNONYM = "synonym";
+	private final StringGraph graph;
+	private final boolean useDerivedFrom;
+	private final boolean useSynonym;
+	// graph version when the index was (re)built
+	private long version;
+
+	private String[] vertices;
+	private Object2IntOpenHashMap<String> vertexToId;
+	// edges going up from vertex v (to its parents and to its synonyms) are in the range [upOffsets[v], upOffsets[v+1])
+	private int[] upOffsets;
+	private int[] upTargets;
+	private StringEdge[] upEdges;
+
+	// vertex -> component, components numbered in topological order (parents before children)
+	private int[] component;
+	private int numberOfComponents;
+	// vertices of component c are in the range [memberOffsets[c], memberOffsets[c+1])
+	private int[] memberOffsets;
+	private int[] members;
+	// condensed DAG
+	private int[] parentOffsets;
+	private int[] parents;
+	private int[] childOffsets;
+	private int[] children;
+	// longest path from a root
+	private int[] depth;
+	// jump[k][c] is the 2^k-th ancestor of c following the deepest parents (roots jump to themselves)
+	private int[][] jump;
+	// reachability intervals [low, post]
+	private int[] low0;
+	private int[] post0;
+	private int[] low1;
+	private int[] post1;
+	// interval of the spanning forest of the first traversal
+	private int[] treePre;
+	private int[] treePost;
+
+	private ThreadLocal<QueryBuffers> buffers;
+
+	private static class QueryBuffers {
+		final int[] markA;
+		final int[] markB;
+		final int[] markC;
+		final int[] componentQueue;
+		final int[] vertexMark;
+		final int[] vertexCameFrom;
+		final int[] vertexQueue;
+		int epoch;
+
+		QueryBuffers(int numComponents, int numVertices) {
+			markA = new int[numComponents];
+			markB = new int[numComponents];
+			markC = new int[numComponents];
+			componentQueue = new int[numComponents];
+			vertexMark = new int[numVertices];
+			vertexCameFrom = new int[numVertices];
+			vertexQueue = new int[numVertices];
+			epoch = 0;
+		}
+
+		int nextEpoch() {
+			if (epoch == Integer.MAX_VALUE) {
+				Arrays.fill(markA, 0);
+				Arrays.fill(markB, 0);
+				Arrays.fill(markC, 0);
+				Arrays.fill(vertexMark, 0);
+				epoch = 0;
+			}
+			return ++epoch;
+		}
+	}
+
+	public IsaHierarchyIndex(StringGraph graph) {
+		this(graph, false, false);
+	}
+
+	/**
+	 * Creates the index of the given graph's ISA hierarchy, also following derivedfrom and/or synonym edges if requested (in both directions, as in
+	 * GraphAlgorithms.shortestIsaPath()).
+	 *
+	 * @param graph
+	 * @param useDerivedFrom
+	 * @param useSynonym
+	 */
+	public IsaHierarchyIndex(StringGraph graph, boolean useDerivedFrom, boolean useSynonym) {
+		this.graph = graph;
+		this.useDerivedFrom = useDerivedFrom;
+		this.useSynonym = useSynonym;
+		build();
+	}
+
+	private boolean isHierarchyEdge(StringEdge edge) {
+		String label = edge.getLabel();
+		return label.equals(ISA) || useDerivedFrom && label.equals(DERIVEDFROM) || useSynonym && label.equals(SYNONYM);
+	}
+
+	/**
+	 * Returns true if the graph has not changed since the index was (re)built.
+	 *
+	 * @return
+	 */
+	public boolean isUpToDate() {
+		return graph.getVersion() == version;
+	}
+
+	/**
+	 * Brings the index up to date with its graph. If the graph's change log (see StringGraph.enableChangeLog()) shows that no edge of the hierarchy was added or
+	 * removed since the last build, nothing is done. Otherwise the index is rebuilt from the hierarchy's edges (not the whole graph). Returns true if the
+	 * index was rebuilt.
+	 *
+	 * @return
+	 */
+	public boolean update() {
+		long current = graph.getVersion();
+		if (current == version)
+			return false;
+		GraphDelta delta = graph.changesSince(version);
+		if (delta != null && !containsHierarchyEdge(delta.getAddedEdges()) && !containsHierarchyEdge(delta.getRemovedEdges())) {
+			version = current;
+			return false;
+		}
+		build();
+		return true;
+	}
+
+	private boolean containsHierarchyEdge(Set<StringEdge> edges) {
+		for (StringEdge edge : edges) {
+			if (isHierarchyEdge(edge))
+				return true;
+		}
+		return false;
+	}
+
+	private void build() {
+		version = graph.getVersion();
+		ArrayList<StringEdge> edges = new ArrayList<>(graph.edgeSet(ISA));
+		if (useDerivedFrom)
+			edges.addAll(graph.edgeSet(DERIVEDFROM));
+		if (useSynonym)
+			edges.addAll(graph.edgeSet(SYNONYM));
+
+		// vertex ids
+		vertexToId = new Object2IntOpenHashMap<>(edges.size());
+		vertexToId.defaultReturnValue(-1);
+		ArrayList<String> vertexList = new ArrayList<>();
+		for (StringEdge edge : edges) {
+			for (String vertex : new String[] { edge.getSource(), edge.getTarget() }) {
+				if (!vertexToId.containsKey(vertex)) {
+					vertexToId.put(vertex, vertexList.size());
+					vertexList.add(vertex);
+				}
+			}
+		}
+		vertices = vertexList.toArray(new String[vertexList.size()]);
+		int n = vertices.length;
+
+		buildUpwardAdjacency(edges, n);
+		condense(n);
+		buildCondensedDAG(n);
+		buildDepthAndJumps();
+		buildIntervals();
+		int numComponents = numberOfComponents;
+		buffers = ThreadLocal.withInitial(() -> new QueryBuffers(numComponents, n));
+	}
+
+	private void buildUpwardAdjacency(ArrayList<StringEdge> edges, int n) {
+		upOffsets = new int[n + 1];
+		for (StringEdge edge : edges) {
+			upOffsets[vertexToId.getInt(edge.getSource()) + 1]++;
+			// derivedfrom and synonym are followed in both directions
+			if (!edge.getLabel().equals(ISA))
+				upOffsets[vertexToId.getInt(edge.getTarget()) + 1]++;
+		}
+		for (int v = 0; v < n; v++) {
+			upOffsets[v + 1] += upOffsets[v];
+		}
+		int[] cursor = Arrays.copyOf(upOffsets, n);
+		upTargets = new int[upOffsets[n]];
+		upEdges = new StringEdge[upOffsets[n]];
+		for (StringEdge edge : edges) {
+			int source = vertexToId.getInt(edge.getSource());
+			int target = vertexToId.getInt(edge.getTarget());
+			upTargets[cursor[source]] = target;
+			upEdges[cursor[source]++] = edge;
+			if (!edge.getLabel().equals(ISA)) {
+				upTargets[cursor[target]] = source;
+				upEdges[cursor[target]++] = edge;
+			}
+		}
+	}
+
+	/**
+	 * iterative Tarjan's strongly connected components. Tarjan's emits a component after every component reachable (upwards) from it, so parents get lower ids.
+	 */
+	private void condense(int n) {
+		component = new int[n];
+		int[] index = new int[n];
+		int[] lowLink = new int[n];
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int[] callStack = new int[n];
+		int[] edgePos = new int[n];
+		Arrays.fill(index, -1);
+		int counter = 0;
+		int sp = 0;
+		int numComponents = 0;
+		for (int s = 0; s < n; s++) {
+			if (index[s] >= 0)
+				continue;
+			int csp = 0;
+			index[s] = lowLink[s] = counter++;
+			stack[sp++] = s;
+			onStack[s] = true;
+			callStack[csp++] = s;
+			edgePos[s] = upOffsets[s];
+			while (csp > 0) {
+				int v = callStack[csp - 1];
+				if (edgePos[v] < upOffsets[v + 1]) {
+					int w = upTargets[edgePos[v]++];
+					if (index[w] < 0) {
+						index[w] = lowLink[w] = counter++;
+						stack[sp++] = w;
+						onStack[w] = true;
+						callStack[csp++] = w;
+						edgePos[w] = upOffsets[w];
+					} else if (onStack[w]) {
+						lowLink[v] = Math.min(lowLink[v], index[w]);
+					}
+				} else {
+					csp--;
+					if (csp > 0) {
+						int u = callStack[csp - 1];
+						lowLink[u] = Math.min(lowLink[u], lowLink[v]);
+					}
+					if (lowLink[v] == index[v]) {
+						int w;
+						do {
+							w = stack[--sp];
+							onStack[w] = false;
+							component[w] = numComponents;
+						} while (w != v);
+						numComponents++;
+					}
+				}
+			}
+		}
+		numberOfComponents = numComponents;
+
+		// members of each component
+		memberOffsets = new int[numComponents + 1];
+		for (int v = 0; v < n; v++) {
+			memberOffsets[component[v] + 1]++;
+		}
+		for (int c = 0; c < numComponents; c++) {
+			memberOffsets[c + 1] += memberOffsets[c];
+		}
+		int[] cursor = Arrays.copyOf(memberOffsets, numComponents);
+		members = new int[n];
+		for (int v = 0; v < n; v++) {
+			members[cursor[component[v]]++] = v;
+		}
+	}
+
+	private void buildCondensedDAG(int n) {
+		// (child, parent) pairs packed in a long, sorted and without repetitions
+		long[] pairs = new long[upTargets.length];
+		int numPairs = 0;
+		for (int v = 0; v < n; v++) {
+			for (int i = upOffsets[v]; i < upOffsets[v + 1]; i++) {
+				int child = component[v];
+				int parent = component[upTargets[i]];
+				if (child != parent)
+					pairs[numPairs++] = ((long) child << 32) | parent;
+			}
+		}
+		Arrays.sort(pairs, 0, numPairs);
+		int unique = 0;
+		for (int i = 0; i < numPairs; i++) {
+			if (unique == 0 || pairs[i] != pairs[unique - 1])
+				pairs[unique++] = pairs[i];
+		}
+		int numComponents = numberOfComponents;
+		parentOffsets = new int[numComponents + 1];
+		childOffsets = new int[numComponents + 1];
+		for (int i = 0; i < unique; i++) {
+			parentOffsets[(int) (pairs[i] >>> 32) + 1]++;
+			childOffsets[(int) pairs[i] + 1]++;
+		}
+		for (int c = 0; c < numComponents; c++) {
+			parentOffsets[c + 1] += parentOffsets[c];
+			childOffsets[c + 1] += childOffsets[c];
+		}
+		parents = new int[unique];
+		children = new int[unique];
+		int[] parentCursor = Arrays.copyOf(parentOffsets, numComponents);
+		int[] childCursor = Arrays.copyOf(childOffsets, numComponents);
+		for (int i = 0; i < unique; i++) {
+			int child = (int) (pairs[i] >>> 32);
+			int parent = (int) pairs[i];
+			parents[parentCursor[child]++] = parent;
+			children[childCursor[parent]++] = child;
+		}
+	}
+
+	private void buildDepthAndJumps() {
+		int numComponents = numberOfComponents;
+		depth = new int[numComponents];
+		int[] treeParent = new int[numComponents];
+		int maxDepth = 0;
+		// parents have lower ids, so they are done before their children
+		for (int c = 0; c < numComponents; c++) {
+			treeParent[c] = c;
+			for (int i = parentOffsets[c]; i < parentOffsets[c + 1]; i++) {
+				int p = parents[i];
+				if (treeParent[c] == c || depth[p] + 1 > depth[c]) {
+					depth[c] = depth[p] + 1;
+					treeParent[c] = p;
+				}
+			}
+			maxDepth = Math.max(maxDepth, depth[c]);
+		}
+		int levels = 1;
+		while ((1 << levels) <= maxDepth) {
+			levels++;
+		}
+		jump = new int[levels][];
+		jump[0] = treeParent;
+		for (int k = 1; k < levels; k++) {
+			int[] previous = jump[k - 1];
+			int[] current = new int[numComponents];
+			for (int c = 0; c < numComponents; c++) {
+				current[c] = previous[previous[c]];
+			}
+			jump[k] = current;
+		}
+	}
+
+	private void buildIntervals() {
+		int numComponents = numberOfComponents;
+		low0 = new int[numComponents];
+		post0 = new int[numComponents];
+		low1 = new int[numComponents];
+		post1 = new int[numComponents];
+		treePre = new int[numComponents];
+		treePost = new int[numComponents];
+		labelTraversal(false, low0, post0, treePre, treePost);
+		labelTraversal(true, low1, post1, null, null);
+	}
+
+	/**
+	 * depth first traversal of the DAG from its roots (going down) labeling each component with the interval [low, post], where post is its post-order rank and
+	 * low the lowest rank of its descendants. If pre/end are given, also labels the spanning forest of the traversal.
+	 */
+	private void labelTraversal(boolean reversed, int[] low, int[] post, int[] pre, int[] end) {
+		int numComponents = numberOfComponents;
+		boolean[] visited = new boolean[numComponents];
+		int[] callStack = new int[numComponents];
+		int[] edgePos = new int[numComponents];
+		int postCounter = 0;
+		int preCounter = 0;
+		for (int r = 0; r < numComponents; r++) {
+			int root = reversed ? numComponents - 1 - r : r;
+			if (visited[root] || parentOffsets[root + 1] > parentOffsets[root])
+				continue;
+			int csp = 0;
+			visited[root] = true;
+			if (pre != null)
+				pre[root] = preCounter++;
+			low[root] = Integer.MAX_VALUE;
+			callStack[csp++] = root;
+			edgePos[root] = 0;
+			while (csp > 0) {
+				int c = callStack[csp - 1];
+				int from = childOffsets[c];
+				int count = childOffsets[c + 1] - from;
+				if (edgePos[c] < count) {
+					int i = edgePos[c]++;
+					int child = children[reversed ? from + count - 1 - i : from + i];
+					if (visited[child]) {
+						low[c] = Math.min(low[c], low[child]);
+						continue;
+					}
+					visited[child] = true;
+					if (pre != null)
+						pre[child] = preCounter++;
+					low[child] = Integer.MAX_VALUE;
+					callStack[csp++] = child;
+					edgePos[child] = 0;
+				} else {
+					csp--;
+					post[c] = postCounter++;
+					low[c] = Math.min(low[c], post[c]);
+					if (end != null)
+						end[c] = preCounter;
+					if (csp > 0) {
+						int p = callStack[csp - 1];
+						low[p] = Math.min(low[p], low[c]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * false if the intervals show that a can not be an ancestor of d (or d itself)
+	 */
+	private boolean mayReach(int a, int d) {
+		return a <= d && low0[a] <= low0[d] && post0[d] <= post0[a] && low1[a] <= low1[d] && post1[d] <= post1[a];
+	}
+
+	/**
+	 * true if the component a is an ancestor of the component d (or d itself)
+	 */
+	private boolean reaches(int a, int d) {
+		if (a == d)
+			return true;
+		if (!mayReach(a, d) || depth[a] >= depth[d])
+			return false;
+		// d in a's subtree of the spanning forest
+		if (treePre[a] <= treePre[d] && treePre[d] < treePost[a])
+			return true;
+		// depth first search going down from a, only into components which may reach d
+		QueryBuffers b = buffers.get();
+		int epoch = b.nextEpoch();
+		int[] stack = b.componentQueue;
+		int sp = 0;
+		stack[sp++] = a;
+		b.markA[a] = epoch;
+		while (sp > 0) {
+			int c = stack[--sp];
+			for (int i = childOffsets[c]; i < childOffsets[c + 1]; i++) {
+				int child = children[i];
+				if (child == d)
+					return true;
+				if (b.markA[child] == epoch || !mayReach(child, d))
+					continue;
+				b.markA[child] = epoch;
+				stack[sp++] = child;
+			}
+		}
+		return false;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public StringGraph getGraph() {
+		return graph;
+	}
+
+	public boolean containsVertex(String vertex) {
+		return vertexToId.containsKey(vertex);
+	}
+
+	public int numberOfVertices() {
+		return vertices.length;
+	}
+
+	/**
+	 * Returns the number of strongly connected components (groups of vertices which are ancestors of each other) of the hierarchy.
+	 *
+	 * @return
+	 */
+	public int numberOfComponents() {
+		return numberOfComponents;
+	}
+
+	/**
+	 * Returns the length of the longest ISA chain from the given vertex up to a root of the hierarchy, -1 if the vertex is not in the hierarchy.
+	 *
+	 * @param vertex
+	 * @return
+	 */
+	public int getDepth(String vertex) {
+		int v = vertexToId.getInt(vertex);
+		if (v < 0)
+			return -1;
+		return depth[component[v]];
+	}
+
+	/**
+	 * Returns true if the ancestor can be reached from the descendant going up the hierarchy (a vertex is an ancestor of itself).
+	 *
+	 * @param descendant
+	 * @param ancestor
+	 * @return
+	 */
+	public boolean isAncestor(String descendant, String ancestor) {
+		int d = vertexToId.getInt(descendant);
+		int a = vertexToId.getInt(ancestor);
+		if (d < 0 || a < 0)
+			return descendant.equals(ancestor);
+		return reaches(component[a], component[d]);
+	}
+
+	/**
+	 * SAFE, returns the vertices of the hierarchy which are ancestors of each other (through isa cycles, synonyms or derivedfrom) with the given one, including
+	 * it.
+	 *
+	 * @param vertex
+	 * @return
+	 */
+	public HashSet<String> getEquivalentVertices(String vertex) {
+		int v = vertexToId.getInt(vertex);
+		HashSet<String> equivalent = new HashSet<>();
+		if (v < 0)
+			return equivalent;
+		addMembers(component[v], equivalent);
+		return equivalent;
+	}
+
+	private void addMembers(int c, Set<String> set) {
+		for (int i = memberOffsets[c]; i < memberOffsets[c + 1]; i++) {
+			set.add(vertices[members[i]]);
+		}
+	}
+
+	/**
+	 * Returns a common ancestor of both vertices in O(log depth), following the deepest parent of each vertex (it is the lowest common ancestor when the
+	 * hierarchy is a tree). Returns null if there is no such ancestor along the deepest parents. See lowestCommonAncestors() for the exact answer.
+	 *
+	 * @param vertexL
+	 * @param vertexR
+	 * @return
+	 */
+	public String commonAncestor(String vertexL, String vertexR) {
+		int l = vertexToId.getInt(vertexL);
+		int r = vertexToId.getInt(vertexR);
+		if (l < 0 || r < 0)
+			return null;
+		int a = component[l];
+		int b = component[r];
+		if (depth[a] < depth[b]) {
+			int t = a;
+			a = b;
+			b = t;
+		}
+		// lift the deepest to the same depth
+		int diff = depth[a] - depth[b];
+		for (int k = 0; diff > 0; k++, diff >>= 1) {
+			if ((diff & 1) != 0)
+				a = jump[k][a];
+		}
+		if (a != b) {
+			for (int k = jump.length - 1; k >= 0; k--) {
+				if (jump[k][a] != jump[k][b]) {
+					a = jump[k][a];
+					b = jump[k][b];
+				}
+			}
+			a = jump[0][a];
+			b = jump[0][b];
+		}
+		if (a != b)
+			return null;
+		return vertices[members[memberOffsets[a]]];
+	}
+
+	/**
+	 * SAFE, returns the lowest common ancestors of both vertices: the common ancestors which are not ancestors of other common ancestors. Cost proportional to
+	 * the number of ancestors of both vertices.
+	 *
+	 * @param vertexL
+	 * @param vertexR
+	 * @return
+	 */
+	public HashSet<String> lowestCommonAncestors(String vertexL, String vertexR) {
+		HashSet<String> lowest = new HashSet<>();
+		int l = vertexToId.getInt(vertexL);
+		int r = vertexToId.getInt(vertexR);
+		if (l < 0 || r < 0)
+			return lowest;
+		QueryBuffers b = buffers.get();
+		int epoch = b.nextEpoch();
+		int[] queue = b.componentQueue;
+		// ancestors of the left vertex
+		markAncestors(component[l], b.markA, epoch, queue);
+		// ancestors of the right vertex, in the queue
+		int numAncestors = markAncestors(component[r], b.markB, epoch, queue);
+		// the parents of a common ancestor are not the lowest
+		for (int i = 0; i < numAncestors; i++) {
+			int c = queue[i];
+			if (b.markA[c] != epoch)
+				continue;
+			for (int j = parentOffsets[c]; j < parentOffsets[c + 1]; j++) {
+				b.markC[parents[j]] = epoch;
+			}
+		}
+		for (int i = 0; i < numAncestors; i++) {
+			int c = queue[i];
+			if (b.markA[c] == epoch && b.markC[c] != epoch)
+				addMembers(c, lowest);
+		}
+		return lowest;
+	}
+
+	/**
+	 * breadth first search going up from c, marking the visited components and leaving them in the queue. Returns their number.
+	 */
+	private int markAncestors(int c, int[] mark, int epoch, int[] queue) {
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = c;
+		mark[c] = epoch;
+		while (head < tail) {
+			int current = queue[head++];
+			for (int i = parentOffsets[current]; i < parentOffsets[current + 1]; i++) {
+				int p = parents[i];
+				if (mark[p] == epoch)
+					continue;
+				mark[p] = epoch;
+				queue[tail++] = p;
+			}
+		}
+		return tail;
+	}
+
+	/**
+	 * SAFE, returns the shortest sequence of hierarchy edges going up from the descendant to the ancestor, empty if the ancestor is not reachable. The search
+	 * only visits vertices which may reach the ancestor according to the reachability intervals.
+	 *
+	 * @param descendant
+	 * @param ancestor
+	 * @return
+	 */
+	public ArrayList<StringEdge> getPath(String descendant, String ancestor) {
+		int start = vertexToId.getInt(descendant);
+		int goal = vertexToId.getInt(ancestor);
+		if (start < 0 || goal < 0 || start == goal || !reaches(component[goal], component[start]))
+			return new ArrayList<>(0);
+		int goalComponent = component[goal];
+		QueryBuffers b = buffers.get();
+		int epoch = b.nextEpoch();
+		int[] queue = b.vertexQueue;
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = start;
+		b.vertexMark[start] = epoch;
+		b.vertexCameFrom[start] = -1;
+		while (head < tail) {
+			int v = queue[head++];
+			for (int i = upOffsets[v]; i < upOffsets[v + 1]; i++) {
+				int w = upTargets[i];
+				if (b.vertexMark[w] == epoch || !mayReach(goalComponent, component[w]))
+					continue;
+				b.vertexMark[w] = epoch;
+				b.vertexCameFrom[w] = i;
+				if (w == goal)
+					return createPath(goal, b.vertexCameFrom);
+				queue[tail++] = w;
+			}
+		}
+		return new ArrayList<>(0);
+	}
+
+	private ArrayList<StringEdge> createPath(int goal, int[] cameFrom) {
+		ArrayList<StringEdge> path = new ArrayList<>();
+		int v = goal;
+		while (cameFrom[v] >= 0) {
+			int i = cameFrom[v];
+			StringEdge edge = upEdges[i];
+			path.add(edge);
+			v = vertexToId.getInt(edge.getOppositeOf(vertices[v]));
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	public String toString() {
+		return "IsaHierarchyIndex [vertices=" + vertices.length + ", components=" + numberOfComponents + ", edges=" + parents.length + "]";
+	}
+
+}
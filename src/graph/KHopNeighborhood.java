@@ -0,0 +1,358 @@
+package graph;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * k-hop (undirected, edge direction is ignored) neighborhoods of the vertices of a StringGraph. The graph is frozen into id based adjacency arrays and the
+ * breadth first search marks the visited vertices in a dense bitset. Large frontiers may be expanded in parallel bottom-up: each task checks its range of
+ * unvisited vertices for neighbors in the frontier's bitset, writing only to its own words. A bounded LRU cache keeps the latest (seed, depth) results. Both
+ * the frozen graph and the cache are discarded when the graph's version (see StringGraph.getVersion()) changes. Thread-safe for concurrent queries while the
+ * graph is not modified.
+ *
+ * @author jcfgonc@gmail.com
+ */
+public class KHopNeighborhood {
+	private static final int DEFAULT_CACHE_CAPACITY = 1024;
+	// minimum number of vertices of the graph for parallel expansions
+	private static final int PARALLEL_MINIMUM_VERTICES = 1 << 16;
+	// vertices (64 per word) checked by each parallel task
+	private static final int PARALLEL_CHUNK_WORDS = 256;
+	private final StringGraph graph;
+	private final int cacheCapacity;
+	private final LinkedHashMap<Long, Neighborhood> cache;
+	private boolean parallel;
+	private volatile FrozenState state;
+
+	/**
+	 * The frozen graph of a given version and the search buffers for it.
+	 */
+	private static class FrozenState {
+		final long version;
+		final FrozenStringGraph frozen;
+		final int[] outOffsets;
+		final int[] outTargets;
+		final int[] inOffsets;
+		final int[] inSources;
+		final ThreadLocal<SearchBuffers> buffers;
+
+		FrozenState(StringGraph graph) {
+			version = graph.getVersion();
+			frozen = graph.freeze();
+			outOffsets = frozen.getOutOffsets();
+			outTargets = frozen.getOutTargets();
+			inOffsets = frozen.getInOffsets();
+			inSources = frozen.getInSources();
+			int numVertices = frozen.numberOfVertices();
+			buffers = ThreadLocal.withInitial(() -> new SearchBuffers(numVertices));
+		}
+	}
+
+	/**
+	 * Bitsets of a search. All bits are cleared when a search ends.
+	 */
+	private static class SearchBuffers {
+		final long[] visited;
+		final long[] frontier;
+		final long[] next;
+
+		SearchBuffers(int numVertices) {
+			int words = (numVertices + 63) >>> 6;
+			visited = new long[words];
+			frontier = new long[words];
+			next = new long[words];
+		}
+	}
+
+	/**
+	 * Vertices in breadth first order, those at distance d in the range [levelOffsets[d], levelOffsets[d+1]).
+	 */
+	private static class Neighborhood {
+		final int[] vertices;
+		final int[] levelOffsets;
+
+		Neighborhood(int[] vertices, int[] levelOffsets) {
+			this.vertices = vertices;
+			this.levelOffsets = levelOffsets;
+		}
+	}
+
+	public KHopNeighborhood(StringGraph graph) {
+		this(graph, DEFAULT_CACHE_CAPACITY);
+	}
+
+	/**
+	 * @param graph
+	 * @param cacheCapacity maximum number of (seed, depth) results kept, zero disables the cache
+	 */
+	public KHopNeighborhood(StringGraph graph, int cacheCapacity) {
+		this.graph = graph;
+		this.cacheCapacity = cacheCapacity;
+		this.cache = new LinkedHashMap<Long, Neighborhood>(16, 0.75f, true) {
+			private static final long serialVersionUID = 2640914127843951045L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Neighborhood> eldest) {
+				return size() > KHopNeighborhood.this.cacheCapacity;
+			}
+		};
+		this.parallel = false;
+	}
+
+	/**
+	 * if true, large frontiers are expanded using all the available cores
+	 *
+	 * @param parallel
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	public StringGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * returns the frozen graph of the graph's current version, discarding the cache if the graph changed
+	 */
+	private FrozenState currentState() {
+		FrozenState s = state;
+		if (s != null && s.version == graph.getVersion())
+			return s;
+		synchronized (cache) {
+			s = state;
+			if (s == null || s.version != graph.getVersion()) {
+				cache.clear();
+				s = new FrozenState(graph);
+				state = s;
+			}
+			return s;
+		}
+	}
+
+	public void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	private Neighborhood getNeighborhood(FrozenState s, int seed, int depth) {
+		Long key = Long.valueOf(((long) seed << 32) | depth);
+		if (cacheCapacity > 0) {
+			synchronized (cache) {
+				Neighborhood n = cache.get(key);
+				if (n != null)
+					return n;
+			}
+		}
+		Neighborhood n = expand(s, seed, depth);
+		if (cacheCapacity > 0) {
+			synchronized (cache) {
+				// do not store results of a graph version already replaced
+				if (state == s)
+					cache.put(key, n);
+			}
+		}
+		return n;
+	}
+
+	private Neighborhood expand(FrozenState s, int seed, int depth) {
+		SearchBuffers b = s.buffers.get();
+		long[] visited = b.visited;
+		IntArrayList vertices = new IntArrayList();
+		int[] levelOffsets = new int[depth + 2];
+		vertices.add(seed);
+		visited[seed >>> 6] |= 1L << seed;
+		levelOffsets[1] = 1;
+		int numVertices = s.frozen.numberOfVertices();
+		int level = 1;
+		for (; level <= depth; level++) {
+			int from = levelOffsets[level - 1];
+			int to = levelOffsets[level];
+			if (from == to)
+				break;
+			// bottom-up when the frontier is a large part of the graph
+			if (parallel && numVertices >= PARALLEL_MINIMUM_VERTICES && (to - from) * 32L > numVertices) {
+				expandBottomUp(s, b, vertices, from, to);
+			} else {
+				expandTopDown(s, visited, vertices, from, to);
+			}
+			levelOffsets[level + 1] = vertices.size();
+		}
+		// levels not reached are empty
+		for (; level <= depth; level++) {
+			levelOffsets[level + 1] = vertices.size();
+		}
+		// leave the buffers clean for the next search
+		int[] result = vertices.toIntArray();
+		for (int v : result) {
+			visited[v >>> 6] = 0;
+		}
+		return new Neighborhood(result, levelOffsets);
+	}
+
+	private void expandTopDown(FrozenState s, long[] visited, IntArrayList vertices, int from, int to) {
+		for (int i = from; i < to; i++) {
+			int v = vertices.getInt(i);
+			for (int j = s.outOffsets[v]; j < s.outOffsets[v + 1]; j++) {
+				visit(s.outTargets[j], visited, vertices);
+			}
+			for (int j = s.inOffsets[v]; j < s.inOffsets[v + 1]; j++) {
+				visit(s.inSources[j], visited, vertices);
+			}
+		}
+	}
+
+	private static void visit(int w, long[] visited, IntArrayList vertices) {
+		long bit = 1L << w;
+		if ((visited[w >>> 6] & bit) != 0)
+			return;
+		visited[w >>> 6] |= bit;
+		vertices.add(w);
+	}
+
+	private void expandBottomUp(FrozenState s, SearchBuffers b, IntArrayList vertices, int from, int to) {
+		long[] visited = b.visited;
+		long[] frontier = b.frontier;
+		long[] next = b.next;
+		for (int i = from; i < to; i++) {
+			int v = vertices.getInt(i);
+			frontier[v >>> 6] |= 1L << v;
+		}
+		int words = visited.length;
+		int numVertices = s.frozen.numberOfVertices();
+		int chunks = (words + PARALLEL_CHUNK_WORDS - 1) / PARALLEL_CHUNK_WORDS;
+		IntStream.range(0, chunks).parallel().forEach(chunk -> {
+			int endWord = Math.min(words, (chunk + 1) * PARALLEL_CHUNK_WORDS);
+			for (int word = chunk * PARALLEL_CHUNK_WORDS; word < endWord; word++) {
+				long unvisited = ~visited[word];
+				long found = 0;
+				while (unvisited != 0) {
+					int bit = Long.numberOfTrailingZeros(unvisited);
+					unvisited &= unvisited - 1;
+					int v = (word << 6) + bit;
+					if (v >= numVertices)
+						break;
+					if (hasNeighborIn(s, v, frontier))
+						found |= 1L << bit;
+				}
+				next[word] = found;
+			}
+		});
+		// merge in increasing id order and clean the frontier and next bitsets
+		for (int word = 0; word < words; word++) {
+			long found = next[word];
+			if (found == 0)
+				continue;
+			visited[word] |= found;
+			next[word] = 0;
+			while (found != 0) {
+				int bit = Long.numberOfTrailingZeros(found);
+				found &= found - 1;
+				vertices.add((word << 6) + bit);
+			}
+		}
+		for (int i = from; i < to; i++) {
+			int v = vertices.getInt(i);
+			frontier[v >>> 6] = 0;
+		}
+	}
+
+	private static boolean hasNeighborIn(FrozenState s, int v, long[] bitset) {
+		for (int j = s.outOffsets[v]; j < s.outOffsets[v + 1]; j++) {
+			int w = s.outTargets[j];
+			if ((bitset[w >>> 6] & (1L << w)) != 0)
+				return true;
+		}
+		for (int j = s.inOffsets[v]; j < s.inOffsets[v + 1]; j++) {
+			int w = s.inSources[j];
+			if ((bitset[w >>> 6] & (1L << w)) != 0)
+				return true;
+		}
+		return false;
+	}
+
+	private static HashSet<String> toSet(FrozenState s, Neighborhood n, int from, int to) {
+		HashSet<String> set = new HashSet<>((to - from) * 2);
+		for (int i = from; i < to; i++) {
+			set.add(s.frozen.getVertexName(n.vertices[i]));
+		}
+		return set;
+	}
+
+	/**
+	 * SAFE, returns the vertices at exactly the given distance from the seed (as GraphAlgorithms.getNeighborhoodDepth()).
+	 *
+	 * @param seed
+	 * @param depth
+	 * @return
+	 */
+	public HashSet<String> getVerticesAtDistance(String seed, int depth) {
+		FrozenState s = currentState();
+		int id = s.frozen.getVertexId(seed);
+		if (id < 0 || depth < 0)
+			return new HashSet<>(0);
+		Neighborhood n = getNeighborhood(s, id, depth);
+		return toSet(s, n, n.levelOffsets[depth], n.levelOffsets[depth + 1]);
+	}
+
+	/**
+	 * SAFE, returns the vertices at a distance of at most depth from the seed, including it.
+	 *
+	 * @param seed
+	 * @param depth
+	 * @return
+	 */
+	public HashSet<String> getNeighborhood(String seed, int depth) {
+		FrozenState s = currentState();
+		int id = s.frozen.getVertexId(seed);
+		if (id < 0 || depth < 0)
+			return new HashSet<>(0);
+		Neighborhood n = getNeighborhood(s, id, depth);
+		return toSet(s, n, 0, n.vertices.length);
+	}
+
+	/**
+	 * SAFE, returns the neighborhood (see getNeighborhood()) of each of the given seeds, computed in parallel. Seeds not in the graph are not in the returned
+	 * map.
+	 *
+	 * @param seeds
+	 * @param depth
+	 * @return
+	 */
+	public HashMap<String, HashSet<String>> getNeighborhoods(Collection<String> seeds, int depth) {
+		FrozenState s = currentState();
+		ConcurrentHashMap<String, HashSet<String>> neighborhoods = new ConcurrentHashMap<>(seeds.size() * 2);
+		seeds.parallelStream().forEach(seed -> {
+			int id = s.frozen.getVertexId(seed);
+			if (id < 0 || depth < 0)
+				return;
+			Neighborhood n = getNeighborhood(s, id, depth);
+			neighborhoods.put(seed, toSet(s, n, 0, n.vertices.length));
+		});
+		return new HashMap<>(neighborhoods);
+	}
+
+	/**
+	 * Returns the number of vertices at a distance of at most depth from the seed, including it (zero if not in the graph).
+	 *
+	 * @param seed
+	 * @param depth
+	 * @return
+	 */
+	public int getNeighborhoodSize(String seed, int depth) {
+		FrozenState s = currentState();
+		int id = s.frozen.getVertexId(seed);
+		if (id < 0 || depth < 0)
+			return 0;
+		return getNeighborhood(s, id, depth).vertices.length;
+	}
+
+}
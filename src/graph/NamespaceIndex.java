@@ -0,0 +1,186 @@
+package graph;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Optional index of the namespaces of the vertices of a StringGraph (see StringGraph.enableNamespaceIndex()), for graphs whose concepts are stored as
+ * namespace/concept. Each vertex's namespace is parsed once, when the vertex is inserted, and the namespace -> vertices and namespace -> edges mappings are
+ * updated in O(1) on every edge addition/removal. An edge is mapped from the namespaces of both its source and target. Vertices without a namespace are mapped
+ * from the null namespace (as GraphAlgorithms.getConceptNamespace()).
+ *
+ * @author jcfgonc@gmail.com
+ */
+public class NamespaceIndex {
+	private final HashMap<String, HashSet<String>> namespaceVertices;
+	private final HashMap<String, HashSet<StringEdge>> namespaceEdges;
+	private final HashMap<String, VertexEntry> vertices;
+
+	/**
+	 * The namespace of a vertex and its number of incident edges.
+	 */
+	private static class VertexEntry {
+		final String namespace;
+		int degree;
+
+		VertexEntry(String namespace) {
+			this.namespace = namespace;
+		}
+	}
+
+	NamespaceIndex() {
+		namespaceVertices = new HashMap<>();
+		namespaceEdges = new HashMap<>();
+		vertices = new HashMap<>();
+	}
+
+	/**
+	 * Returns the namespace of the given concept (the text before the first '/') or null if it has none. Same as GraphAlgorithms.getConceptNamespace() but
+	 * without its global cache.
+	 *
+	 * @param concept
+	 * @return
+	 */
+	public static String parseNamespace(String concept) {
+		int i0 = concept.indexOf('/');
+		if (i0 < 0)
+			return null;
+		return concept.substring(0, i0);
+	}
+
+	/**
+	 * increments the degree of the vertex, parsing its namespace if new, and returns its namespace
+	 */
+	private String addVertex(String vertex) {
+		VertexEntry entry = vertices.get(vertex);
+		if (entry == null) {
+			entry = new VertexEntry(parseNamespace(vertex));
+			vertices.put(vertex, entry);
+			HashSet<String> set = namespaceVertices.get(entry.namespace);
+			if (set == null) {
+				set = new HashSet<>();
+				namespaceVertices.put(entry.namespace, set);
+			}
+			set.add(vertex);
+		}
+		entry.degree++;
+		return entry.namespace;
+	}
+
+	/**
+	 * decrements the degree of the vertex, removing it if it has no more edges, and returns its namespace
+	 */
+	private String removeVertex(String vertex) {
+		VertexEntry entry = vertices.get(vertex);
+		if (entry == null)
+			return null;
+		entry.degree--;
+		if (entry.degree <= 0) {
+			vertices.remove(vertex);
+			HashSet<String> set = namespaceVertices.get(entry.namespace);
+			set.remove(vertex);
+			if (set.isEmpty())
+				namespaceVertices.remove(entry.namespace);
+		}
+		return entry.namespace;
+	}
+
+	void add(StringEdge edge) {
+		String sourceNS = addVertex(edge.getSource());
+		String targetNS = addVertex(edge.getTarget());
+		addEdge(sourceNS, edge);
+		if (!equals(sourceNS, targetNS))
+			addEdge(targetNS, edge);
+	}
+
+	void remove(StringEdge edge) {
+		String sourceNS = removeVertex(edge.getSource());
+		String targetNS = removeVertex(edge.getTarget());
+		removeEdge(sourceNS, edge);
+		if (!equals(sourceNS, targetNS))
+			removeEdge(targetNS, edge);
+	}
+
+	void clear() {
+		namespaceVertices.clear();
+		namespaceEdges.clear();
+		vertices.clear();
+	}
+
+	private static boolean equals(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	private void addEdge(String namespace, StringEdge edge) {
+		HashSet<StringEdge> set = namespaceEdges.get(namespace);
+		if (set == null) {
+			set = new HashSet<>();
+			namespaceEdges.put(namespace, set);
+		}
+		set.add(edge);
+	}
+
+	private void removeEdge(String namespace, StringEdge edge) {
+		HashSet<StringEdge> set = namespaceEdges.get(namespace);
+		if (set == null)
+			return;
+		set.remove(edge);
+		if (set.isEmpty())
+			namespaceEdges.remove(namespace);
+	}
+
+	/**
+	 * Returns the namespace of the given vertex, null if it has none or is not in the graph.
+	 *
+	 * @param vertex
+	 * @return
+	 */
+	public String getNamespace(String vertex) {
+		VertexEntry entry = vertices.get(vertex);
+		if (entry == null)
+			return null;
+		return entry.namespace;
+	}
+
+	/**
+	 * UNSAFE, returns the namespaces of the vertices of the graph (including null if some vertex has no namespace).
+	 *
+	 * @return
+	 */
+	public Set<String> getNamespaces() {
+		return namespaceVertices.keySet();
+	}
+
+	public int numberOfNamespaces() {
+		return namespaceVertices.size();
+	}
+
+	/**
+	 * UNSAFE, returns the vertices in the given namespace. Empty if the namespace does not exist.
+	 *
+	 * @param namespace
+	 * @return
+	 */
+	public Set<String> getVertices(String namespace) {
+		HashSet<String> set = namespaceVertices.get(namespace);
+		if (set == null)
+			return Collections.emptySet();
+		return set;
+	}
+
+	/**
+	 * UNSAFE, returns the edges with the source or the target in the given namespace. Empty if the namespace does not exist.
+	 *
+	 * @param namespace
+	 * @return
+	 */
+	public Set<StringEdge> getEdges(String namespace) {
+		HashSet<StringEdge> set = namespaceEdges.get(namespace);
+		if (set == null)
+			return Collections.emptySet();
+		return set;
+	}
+
+}
@@ -0,0 +1,321 @@
+package graph;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import stream.StreamProcessor;
+import stream.StreamService;
+import structures.StringInterner;
+import utils.CompressedFiles;
+import utils.OSTools;
+
+/**
+ * Parallel reader of CSV graphs (one source,relation,target edge per line, as GraphReadWrite.readCSV()). The file is memory-mapped in chunks of at most
+ * MAXIMUM_CHUNK_SIZE bytes, split at line boundaries, so files larger than 2 GB are supported. Each thread parses the UTF-8 bytes of its chunks directly,
+ * without decoding the whole file, and interns the strings in a local dictionary backed by the graph's StringInterner. The edges are added to the graph in a
+ * single bulk insertion, in file order. Lines whose first character is # are comments, CRLF line endings and a UTF-8 byte order mark are accepted, the tokens
+ * are stripped of whitespace and lines without exactly three non empty tokens are ignored. Gzip and zip compressed files (see CompressedFiles) are decompressed in
+ * a separate thread while the previously decompressed blocks are parsed.
+ *
+ * @author jcfgonc@gmail.com
+ */
+public class ParallelCSVReader {
+	private static final int MAXIMUM_CHUNK_SIZE = 1 << 28;
+	private static final int MINIMUM_CHUNK_SIZE = 1 << 20;
+	// chunks per thread, to balance lines of different lengths
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	public static StringGraph read(String filename, StringGraph graph) throws IOException {
+		return read(filename, graph, OSTools.getNumberOfLogicalProcessors());
+	}
+
+	/**
+	 * Reads the edges of the given CSV file into the graph using the given number of threads.
+	 *
+	 * @param filename
+	 * @param graph
+	 * @param numberOfThreads
+	 * @return
+	 * @throws IOException
+	 */
+	public static StringGraph read(String filename, StringGraph graph, int numberOfThreads) throws IOException {
+		ArrayList<StringEdge> edges = readEdges(filename, graph.getInterner(), numberOfThreads);
+		graph.addEdges(edges, numberOfThreads > 1);
+		return graph;
+	}
+
+	/**
+	 * Returns the edges of the given CSV file, in file order, with their strings interned in the given dictionary.
+	 *
+	 * @param filename
+	 * @param interner
+	 * @param numberOfThreads
+	 * @return
+	 * @throws IOException
+	 */
+	public static ArrayList<StringEdge> readEdges(String filename, StringInterner interner, int numberOfThreads) throws IOException {
+		if (numberOfThreads < 1)
+			throw new IllegalArgumentException("numberOfThreads must be positive: " + numberOfThreads);
+		if (CompressedFiles.isCompressed(filename)) {
+			try (InputStream is = CompressedFiles.newInputStream(filename)) {
+				return readEdges(is, interner, numberOfThreads);
+			}
+		}
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			long size = channel.size();
+			long[] boundaries = getChunkBoundaries(channel, size, numberOfThreads);
+			int numChunks = boundaries.length - 1;
+			ArrayList<ArrayList<StringEdge>> chunkEdges = new ArrayList<>(Collections.nCopies(numChunks, null));
+			IOException[] errors = new IOException[numChunks];
+			StreamService ss = new StreamService(Math.min(numberOfThreads, Math.max(1, numChunks)));
+			try {
+				ss.invoke(numChunks, new StreamProcessor() {
+
+					@Override
+					public void run(int processorId, int rangeL, int rangeH, int streamSize) {
+						// local dictionary, saves most lookups in the shared one
+						HashMap<String, String> dictionary = new HashMap<>();
+						for (int i = rangeL; i <= rangeH; i++) {
+							try {
+								MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, boundaries[i], boundaries[i + 1] - boundaries[i]);
+								chunkEdges.set(i, parseChunk(buffer, i == 0, interner, dictionary));
+							} catch (IOException e) {
+								errors[i] = e;
+							}
+						}
+					}
+				});
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException("interrupted while reading " + filename);
+			} finally {
+				ss.shutdown();
+			}
+			int numEdges = 0;
+			for (int i = 0; i < numChunks; i++) {
+				if (errors[i] != null)
+					throw errors[i];
+				if (chunkEdges.get(i) == null)
+					throw new IOException("failed to read chunk " + i + " of " + filename);
+				numEdges += chunkEdges.get(i).size();
+			}
+			ArrayList<StringEdge> edges = new ArrayList<>(numEdges);
+			for (int i = 0; i < numChunks; i++) {
+				edges.addAll(chunkEdges.get(i));
+				chunkEdges.set(i, null);
+			}
+			return edges;
+		}
+	}
+
+	/**
+	 * Returns the edges of the given CSV stream, in stream order. The stream is read in blocks ending at line boundaries, each window of blocks being parsed in
+	 * parallel while the stream (for instance, a decompressing one from CompressedFiles) keeps producing the following bytes.
+	 *
+	 * @param is
+	 * @param interner
+	 * @param numberOfThreads
+	 * @return
+	 * @throws IOException
+	 */
+	public static ArrayList<StringEdge> readEdges(InputStream is, StringInterner interner, int numberOfThreads) throws IOException {
+		if (numberOfThreads < 1)
+			throw new IllegalArgumentException("numberOfThreads must be positive: " + numberOfThreads);
+		int windowSize = numberOfThreads * CHUNKS_PER_THREAD;
+		ArrayList<StringEdge> edges = new ArrayList<>();
+		StreamService ss = new StreamService(numberOfThreads);
+		try {
+			byte[] carry = new byte[0];
+			boolean firstBlock = true;
+			boolean ended = false;
+			while (!ended) {
+				// read the window's blocks, each ending after a newline (except at the end of the stream)
+				ArrayList<ByteBuffer> blocks = new ArrayList<>(windowSize);
+				while (blocks.size() < windowSize && !ended) {
+					byte[] block = Arrays.copyOf(carry, Math.max(MINIMUM_CHUNK_SIZE, carry.length * 2));
+					int size = carry.length;
+					int lineEnd = -1;
+					while (lineEnd < 0) {
+						if (size == block.length)
+							block = Arrays.copyOf(block, block.length * 2);
+						int read = is.readNBytes(block, size, block.length - size);
+						if (read == 0) {
+							ended = true;
+							lineEnd = size;
+							break;
+						}
+						for (int i = size + read - 1; i >= size; i--) {
+							if (block[i] == '\n') {
+								lineEnd = i + 1;
+								break;
+							}
+						}
+						size += read;
+					}
+					carry = Arrays.copyOfRange(block, lineEnd, size);
+					if (lineEnd > 0)
+						blocks.add(ByteBuffer.wrap(block, 0, lineEnd).slice());
+				}
+				int numBlocks = blocks.size();
+				if (numBlocks == 0)
+					break;
+				ArrayList<ArrayList<StringEdge>> blockEdges = new ArrayList<>(Collections.nCopies(numBlocks, null));
+				boolean containsFirst = firstBlock;
+				ss.invoke(numBlocks, new StreamProcessor() {
+
+					@Override
+					public void run(int processorId, int rangeL, int rangeH, int streamSize) {
+						HashMap<String, String> dictionary = new HashMap<>();
+						for (int i = rangeL; i <= rangeH; i++) {
+							blockEdges.set(i, parseChunk(blocks.get(i), containsFirst && i == 0, interner, dictionary));
+						}
+					}
+				});
+				firstBlock = false;
+				for (int i = 0; i < numBlocks; i++) {
+					if (blockEdges.get(i) == null)
+						throw new IOException("failed to parse block " + i + " of the stream");
+					edges.addAll(blockEdges.get(i));
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("interrupted while reading the stream");
+		} finally {
+			ss.shutdown();
+		}
+		return edges;
+	}
+
+	/**
+	 * returns the offsets of the chunks of the file, each chunk (except possibly the last) ending right after a newline
+	 */
+	private static long[] getChunkBoundaries(FileChannel channel, long size, int numberOfThreads) throws IOException {
+		long chunkSize = size / ((long) numberOfThreads * CHUNKS_PER_THREAD);
+		chunkSize = Math.max(MINIMUM_CHUNK_SIZE, Math.min(MAXIMUM_CHUNK_SIZE, chunkSize));
+		LongArrayList boundaries = new LongArrayList();
+		boundaries.add(0);
+		ByteBuffer scan = ByteBuffer.allocate(1 << 12);
+		long start = 0;
+		while (start < size) {
+			long end = start + chunkSize;
+			if (end >= size) {
+				end = size;
+			} else {
+				end = findLineEnd(channel, end - 1, size, scan);
+				if (end - start > Integer.MAX_VALUE)
+					throw new IOException("line too long at offset " + start);
+			}
+			boundaries.add(end);
+			start = end;
+		}
+		if (boundaries.size() == 1)
+			boundaries.add(0);
+		return boundaries.toLongArray();
+	}
+
+	/**
+	 * returns the offset following the first newline at or after the given position, or the file size if there is none
+	 */
+	private static long findLineEnd(FileChannel channel, long position, long size, ByteBuffer scan) throws IOException {
+		while (position < size) {
+			scan.clear();
+			int read = channel.read(scan, position);
+			if (read <= 0)
+				break;
+			for (int i = 0; i < read; i++) {
+				if (scan.get(i) == '\n')
+					return position + i + 1;
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	private static ArrayList<StringEdge> parseChunk(ByteBuffer buffer, boolean firstChunk, StringInterner interner, HashMap<String, String> dictionary) {
+		ArrayList<StringEdge> edges = new ArrayList<>();
+		int limit = buffer.limit();
+		int pos = 0;
+		// UTF-8 byte order mark
+		if (firstChunk && limit >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB && buffer.get(2) == (byte) 0xBF)
+			pos = 3;
+		byte[] line = new byte[256];
+		int[] tokenStarts = new int[3];
+		int[] tokenEnds = new int[3];
+		while (pos < limit) {
+			int end = pos;
+			while (end < limit && buffer.get(end) != '\n') {
+				end++;
+			}
+			int length = end - pos;
+			if (length > line.length)
+				line = new byte[Math.max(length, line.length * 2)];
+			buffer.get(pos, line, 0, length);
+			pos = end + 1;
+
+			// ',' and '#' never occur inside multi-byte UTF-8 sequences
+			int start = skipWhitespace(line, 0, length);
+			if (start == length || line[start] == '#')
+				continue;
+			// tokens are the non empty runs between commas, as in VariousUtils.fastSplit()
+			int numTokens = 0;
+			int tokenStart = start;
+			for (int i = start; i <= length && numTokens <= 3; i++) {
+				if (i == length || line[i] == ',') {
+					if (i > tokenStart) {
+						if (numTokens < 3) {
+							tokenStarts[numTokens] = tokenStart;
+							tokenEnds[numTokens] = i;
+						}
+						numTokens++;
+					}
+					tokenStart = i + 1;
+				}
+			}
+			if (numTokens != 3)
+				continue;
+			String source = token(line, tokenStarts[0], tokenEnds[0], interner, dictionary);
+			String label = token(line, tokenStarts[1], tokenEnds[1], interner, dictionary);
+			String target = token(line, tokenStarts[2], tokenEnds[2], interner, dictionary);
+			if (source.isEmpty() || label.isEmpty() || target.isEmpty())
+				continue;
+			edges.add(new StringEdge(source, target, label));
+		}
+		return edges;
+	}
+
+	private static int skipWhitespace(byte[] line, int from, int to) {
+		while (from < to && (line[from] & 0xFF) <= ' ') {
+			from++;
+		}
+		return from;
+	}
+
+	/**
+	 * decodes the stripped token in [from, to) and returns its canonical instance
+	 */
+	private static String token(byte[] line, int from, int to, StringInterner interner, HashMap<String, String> dictionary) {
+		from = skipWhitespace(line, from, to);
+		while (to > from && (line[to - 1] & 0xFF) <= ' ') {
+			to--;
+		}
+		String s = new String(line, from, to - from, StandardCharsets.UTF_8);
+		String canonical = dictionary.get(s);
+		if (canonical == null) {
+			canonical = interner.intern(s);
+			dictionary.put(canonical, canonical);
+		}
+		return canonical;
+	}
+
+}
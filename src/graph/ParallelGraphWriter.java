@@ -0,0 +1,377 @@
+package graph;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import utils.CompressedFiles;
+
+/**
+ * Writes graphs in the text formats of GraphReadWrite (CSV, TSV, TGF, Prolog and Divago) with the same output, but formatting the edges in parallel. Edges are
+ * split in chunks, each chunk is encoded (UTF-8) by a thread into its own byte buffer and the chunks are written in order to a FileChannel through a large
+ * direct buffer while the next chunks are being formatted. The output follows the iteration order of the given edges or, if sorted is true, is sorted by
+ * source, relation and target. Files ending in .gz or .zip are compressed in a separate thread (see CompressedFiles). The async functions write a snapshot of
+ * the graph in a background thread, returning right after taking the snapshot.
+ *
+ * @author jcfgonc@gmail.com
+ */
+public class ParallelGraphWriter {
+	private static final int CHUNK_SIZE = 1 << 14;
+	// chunks formatted at once, per core
+	private static final int CHUNKS_PER_THREAD = 4;
+	private static final int OUTPUT_BUFFER_SIZE = 1 << 22;
+	private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+	private static final Comparator<StringEdge> EDGE_ORDER = Comparator.comparing(StringEdge::getSource).thenComparing(StringEdge::getLabel)
+			.thenComparing(StringEdge::getTarget);
+	// one background thread writing the snapshots in order, terminated when idle so that it does not keep the JVM alive
+	private static final ExecutorService backgroundWriter = new ThreadPoolExecutor(0, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+
+	/**
+	 * Growable byte buffer with an ASCII fast path.
+	 */
+	private static class ByteSink {
+		byte[] data = new byte[1 << 16];
+		int size;
+
+		private void ensureCapacity(int extra) {
+			if (size + extra > data.length)
+				data = Arrays.copyOf(data, Math.max(size + extra, data.length * 2));
+		}
+
+		void append(String s) {
+			int length = s.length();
+			ensureCapacity(length);
+			for (int i = 0; i < length; i++) {
+				char c = s.charAt(i);
+				if (c >= 0x80) {
+					// not ASCII, encode the whole string
+					append(s.getBytes(StandardCharsets.UTF_8));
+					return;
+				}
+				data[size + i] = (byte) c;
+			}
+			size += length;
+		}
+
+		void append(byte[] bytes) {
+			ensureCapacity(bytes.length);
+			System.arraycopy(bytes, 0, data, size, bytes.length);
+			size += bytes.length;
+		}
+
+		void append(char c) {
+			ensureCapacity(1);
+			data[size++] = (byte) c;
+		}
+
+		void append(int i) {
+			append(Integer.toString(i));
+		}
+
+		void newLine() {
+			append(LINE_SEPARATOR);
+		}
+	}
+
+	/**
+	 * formats an element into the sink
+	 */
+	private interface Formatter<T> {
+		void format(T element, ByteSink sink);
+	}
+
+	private static final ThreadLocal<ByteSink> sinks = ThreadLocal.withInitial(ByteSink::new);
+
+	/**
+	 * Writes the elements to the channel, formatting windows of chunks in parallel, the next window while the previous is written.
+	 */
+	private static <T> void write(WritableByteChannel channel, ByteBuffer buffer, T[] elements, Formatter<T> formatter) throws IOException {
+		int numChunks = (elements.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		int windowSize = Runtime.getRuntime().availableProcessors() * CHUNKS_PER_THREAD;
+		CompletableFuture<byte[][]> next = formatAsync(elements, formatter, 0, Math.min(numChunks, windowSize));
+		for (int window = 0; window < numChunks; window += windowSize) {
+			byte[][] chunks = next.join();
+			int nextWindow = window + windowSize;
+			if (nextWindow < numChunks)
+				next = formatAsync(elements, formatter, nextWindow, Math.min(numChunks, nextWindow + windowSize));
+			for (byte[] chunk : chunks) {
+				put(channel, buffer, chunk);
+			}
+		}
+	}
+
+	private static <T> CompletableFuture<byte[][]> formatAsync(T[] elements, Formatter<T> formatter, int fromChunk, int toChunk) {
+		return CompletableFuture.supplyAsync(() -> {
+			byte[][] chunks = new byte[toChunk - fromChunk][];
+			IntStream.range(fromChunk, toChunk).parallel().forEach(chunk -> {
+				ByteSink sink = sinks.get();
+				sink.size = 0;
+				int to = Math.min(elements.length, (chunk + 1) * CHUNK_SIZE);
+				for (int i = chunk * CHUNK_SIZE; i < to; i++) {
+					formatter.format(elements[i], sink);
+				}
+				chunks[chunk - fromChunk] = Arrays.copyOf(sink.data, sink.size);
+			});
+			return chunks;
+		});
+	}
+
+	private static void put(WritableByteChannel channel, ByteBuffer buffer, byte[] bytes) throws IOException {
+		int from = 0;
+		while (from < bytes.length) {
+			if (!buffer.hasRemaining())
+				flush(channel, buffer);
+			int amount = Math.min(buffer.remaining(), bytes.length - from);
+			buffer.put(bytes, from, amount);
+			from += amount;
+		}
+	}
+
+	private static void flush(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private static StringEdge[] toArray(Collection<StringEdge> edges, boolean sorted) {
+		StringEdge[] array = edges.toArray(new StringEdge[edges.size()]);
+		if (sorted)
+			Arrays.parallelSort(array, EDGE_ORDER);
+		return array;
+	}
+
+	/**
+	 * opens the file for writing, gzip and zip compressed files (given by the extension) being compressed in a separate thread, see CompressedFiles
+	 */
+	private static WritableByteChannel openChannel(String filename) throws IOException {
+		if (CompressedFiles.isCompressed(filename))
+			return Channels.newChannel(CompressedFiles.newOutputStream(filename));
+		return FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	/**
+	 * Writes the optional header and the formatted edges to the given file.
+	 */
+	private static void writeFile(String filename, byte[] header, StringEdge[] edges, Formatter<StringEdge> formatter) throws IOException {
+		try (WritableByteChannel channel = openChannel(filename)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+			if (header != null)
+				put(channel, buffer, header);
+			write(channel, buffer, edges, formatter);
+			flush(channel, buffer);
+		}
+	}
+
+	public static void writeCSV(String filename, StringGraph graph, boolean sorted) throws IOException {
+		writeCSV(filename, graph.edgeSet(), sorted);
+	}
+
+	/**
+	 * Writes the edges as source,relation,target lines (as GraphReadWrite.writeCSV()).
+	 *
+	 * @param filename
+	 * @param edges
+	 * @param sorted
+	 * @throws IOException
+	 */
+	public static void writeCSV(String filename, Collection<StringEdge> edges, boolean sorted) throws IOException {
+		writeFile(filename, null, toArray(edges, sorted), (edge, sink) -> {
+			sink.append(edge.getSource());
+			sink.append(',');
+			sink.append(edge.getLabel());
+			sink.append(',');
+			sink.append(edge.getTarget());
+			sink.newLine();
+		});
+	}
+
+	public static void writeTSV(String filename, StringGraph graph, boolean sorted) throws IOException {
+		writeTSV(filename, graph.edgeSet(), sorted);
+	}
+
+	public static void writeTSV(String filename, Collection<StringEdge> edges, boolean sorted) throws IOException {
+		writeFile(filename, null, toArray(edges, sorted), (edge, sink) -> {
+			sink.append(edge.getSource());
+			sink.append('\t');
+			sink.append(edge.getLabel());
+			sink.append('\t');
+			sink.append(edge.getTarget());
+			sink.newLine();
+		});
+	}
+
+	/**
+	 * Writes the edges as relation(source,target) facts (as GraphReadWrite.writePRO()).
+	 *
+	 * @param filename
+	 * @param edges
+	 * @param sorted
+	 * @throws IOException
+	 */
+	public static void writePRO(String filename, Collection<StringEdge> edges, boolean sorted) throws IOException {
+		writeFile(filename, null, toArray(edges, sorted), (edge, sink) -> {
+			sink.append(GraphReadWrite.removeComma(edge.getLabel()));
+			sink.append('(');
+			sink.append(GraphReadWrite.removeComma(edge.getSource()));
+			sink.append(',');
+			sink.append(GraphReadWrite.removeComma(edge.getTarget()));
+			sink.append(").");
+			sink.newLine();
+		});
+	}
+
+	/**
+	 * Writes the edges as Divago r(namespace,source,relation,target) facts (as GraphReadWrite.writeDT()).
+	 *
+	 * @param filename
+	 * @param edges
+	 * @param namespace
+	 * @param sorted
+	 * @throws IOException
+	 */
+	public static void writeDT(String filename, Collection<StringEdge> edges, String namespace, boolean sorted) throws IOException {
+		ByteSink header = new ByteSink();
+		header.append(":-multifile r/4.");
+		header.newLine();
+		header.newLine();
+		String prefix = "r(" + namespace + ",";
+		writeFile(filename, Arrays.copyOf(header.data, header.size), toArray(edges, sorted), (edge, sink) -> {
+			sink.append(prefix);
+			sink.append(GraphReadWrite.removeComma(edge.getSource()));
+			sink.append(',');
+			sink.append(GraphReadWrite.removeComma(edge.getLabel()));
+			sink.append(',');
+			sink.append(GraphReadWrite.removeComma(edge.getTarget()));
+			sink.append(").");
+			sink.newLine();
+		});
+	}
+
+	public static void writeTGF(String filename, StringGraph graph, boolean sorted) throws IOException {
+		writeTGF(filename, graph.getVertexSet(), graph.edgeSet(), sorted);
+	}
+
+	/**
+	 * Writes the vertices (numbered from 1) and then the edges (as GraphReadWrite.writeTGF()).
+	 *
+	 * @param filename
+	 * @param vertices
+	 * @param edges
+	 * @param sorted
+	 * @throws IOException
+	 */
+	public static void writeTGF(String filename, Collection<String> vertices, Collection<StringEdge> edges, boolean sorted) throws IOException {
+		String[] vertexArray = vertices.toArray(new String[vertices.size()]);
+		if (sorted)
+			Arrays.parallelSort(vertexArray);
+		Object2IntOpenHashMap<String> vertexID = new Object2IntOpenHashMap<>(vertexArray.length);
+		for (int i = 0; i < vertexArray.length; i++) {
+			vertexID.put(vertexArray[i], i + 1);
+		}
+		StringEdge[] edgeArray = toArray(edges, sorted);
+		try (WritableByteChannel channel = openChannel(filename)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+			write(channel, buffer, vertexArray, (vertex, sink) -> {
+				sink.append(vertexID.getInt(vertex));
+				sink.append(' ');
+				sink.append(vertex);
+				sink.newLine();
+			});
+			put(channel, buffer, ("#" + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+			write(channel, buffer, edgeArray, (edge, sink) -> {
+				sink.append(vertexID.getInt(edge.getSource()));
+				sink.append(' ');
+				sink.append(vertexID.getInt(edge.getTarget()));
+				sink.append(' ');
+				sink.append(edge.getLabel());
+				sink.newLine();
+			});
+			flush(channel, buffer);
+		}
+	}
+
+	/**
+	 * Writes the graph to the given file in the format given by its extension (csv, tsv, tgf, pro/pl or dt, the Divago namespace being the file name without
+	 * extension). A further .gz or .zip extension compresses the file, for instance kb.csv.gz.
+	 *
+	 * @param filename
+	 * @param graph
+	 * @param sorted
+	 * @throws IOException
+	 */
+	public static void write(String filename, StringGraph graph, boolean sorted) throws IOException {
+		String name = Paths.get(CompressedFiles.getUncompressedName(filename)).getFileName().toString();
+		String extension = CompressedFiles.getExtension(filename);
+		if (extension.equals("csv")) {
+			writeCSV(filename, graph, sorted);
+		} else if (extension.equals("tsv")) {
+			writeTSV(filename, graph, sorted);
+		} else if (extension.equals("tgf")) {
+			writeTGF(filename, graph, sorted);
+		} else if (extension.equals("pro") || extension.equals("pl")) {
+			writePRO(filename, graph.edgeSet(), sorted);
+		} else if (extension.equals("dt")) {
+			writeDT(filename, graph.edgeSet(), name.substring(0, name.lastIndexOf('.')), sorted);
+		} else {
+			throw new IllegalArgumentException("unknown file extension: " + extension);
+		}
+	}
+
+	/**
+	 * Writes a snapshot (see StringGraph(StringGraph), O(1)) of the graph in the background (see write()). Only the snapshot is taken by the calling thread, so
+	 * a lock protecting the graph only needs to be held during this call. Snapshots are written one at a time, in the order they were requested.
+	 *
+	 * @param filename
+	 * @param graph
+	 * @param sorted
+	 * @return
+	 */
+	public static CompletableFuture<Void> writeAsync(String filename, StringGraph graph, boolean sorted) {
+		StringGraph snapshot = new StringGraph(graph);
+		return CompletableFuture.runAsync(() -> {
+			try {
+				write(filename, snapshot, sorted);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, backgroundWriter);
+	}
+
+	/**
+	 * Writes the given edges to a CSV file in the background. The collection must not be changed afterwards, pass a copy (for instance
+	 * ConcurrentStringGraph.edgeSet()).
+	 *
+	 * @param filename
+	 * @param edges
+	 * @param sorted
+	 * @return
+	 */
+	public static CompletableFuture<Void> writeCSVAsync(String filename, Collection<StringEdge> edges, boolean sorted) {
+		return CompletableFuture.runAsync(() -> {
+			try {
+				writeCSV(filename, edges, sorted);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, backgroundWriter);
+	}
+
+}
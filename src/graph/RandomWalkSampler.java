@@ -0,0 +1,329 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+/**
+ * Random walks (edge direction is ignored) over a FrozenStringGraph. Each vertex's incident edges are stored in a single adjacency array so that the next step
+ * is sampled in O(1): uniformly among the incident edges (as GraphAlgorithms.getVertexFromRandomWalk()) or, if relation weights are given, proportionally to
+ * the weight of each edge's relation using a per vertex alias table (Vose's method). Batches of walks run in parallel, each walk with its own SplittableRandom
+ * split from the given seed, so the results only depend on the seed. Thread-safe.
+ *
+ * @author jcfgonc@gmail.com
+ */
+public class RandomWalkSampler {
+	private final FrozenStringGraph graph;
+	// incident edges of vertex v are in the range [offsets[v], offsets[v+1])
+	private final int[] offsets;
+	private final int[] neighbors;
+	// alias tables, null if sampling uniformly
+	private final float[] probability;
+	private final int[] alias;
+	// vertices whose incident edges all have zero weight
+	private final boolean[] deadEnd;
+
+	/**
+	 * Creates a sampler choosing uniformly among the incident edges of each vertex.
+	 *
+	 * @param graph
+	 */
+	public RandomWalkSampler(FrozenStringGraph graph) {
+		this(graph, null);
+	}
+
+	public RandomWalkSampler(StringGraph graph) {
+		this(graph.freeze(), null);
+	}
+
+	/**
+	 * Creates a sampler choosing among the incident edges of each vertex proportionally to the weight of their relations. Relations not in the map have weight
+	 * zero and are never followed. If the map is null, edges are chosen uniformly.
+	 *
+	 * @param graph
+	 * @param relationWeights
+	 */
+	public RandomWalkSampler(FrozenStringGraph graph, Map<String, Double> relationWeights) {
+		this.graph = graph;
+		int numVertices = graph.numberOfVertices();
+		int[] outOffsets = graph.getOutOffsets();
+		int[] outTargets = graph.getOutTargets();
+		int[] outLabels = graph.getOutLabels();
+		int[] inOffsets = graph.getInOffsets();
+		int[] inSources = graph.getInSources();
+		int[] inLabels = graph.getInLabels();
+
+		// merge the outgoing and incoming adjacencies
+		offsets = new int[numVertices + 1];
+		for (int v = 0; v < numVertices; v++) {
+			offsets[v + 1] = offsets[v] + graph.degreeOf(v);
+		}
+		neighbors = new int[offsets[numVertices]];
+		int[] labels = relationWeights == null ? null : new int[neighbors.length];
+		for (int v = 0; v < numVertices; v++) {
+			int pos = offsets[v];
+			for (int i = outOffsets[v]; i < outOffsets[v + 1]; i++, pos++) {
+				neighbors[pos] = outTargets[i];
+				if (labels != null)
+					labels[pos] = outLabels[i];
+			}
+			for (int i = inOffsets[v]; i < inOffsets[v + 1]; i++, pos++) {
+				neighbors[pos] = inSources[i];
+				if (labels != null)
+					labels[pos] = inLabels[i];
+			}
+		}
+
+		deadEnd = new boolean[numVertices];
+		if (relationWeights == null) {
+			probability = null;
+			alias = null;
+			return;
+		}
+		double[] labelWeight = new double[graph.numberOfLabels()];
+		for (int l = 0; l < labelWeight.length; l++) {
+			Double weight = relationWeights.get(graph.getLabelName(l));
+			if (weight != null) {
+				if (weight < 0)
+					throw new IllegalArgumentException("negative weight for relation " + graph.getLabelName(l));
+				labelWeight[l] = weight;
+			}
+		}
+		probability = new float[neighbors.length];
+		alias = new int[neighbors.length];
+		buildAliasTables(labels, labelWeight);
+	}
+
+	/**
+	 * Vose's alias method for the incident edges of each vertex. Entry i of a vertex is chosen with probability[i] and otherwise its alias[i] is.
+	 */
+	private void buildAliasTables(int[] labels, double[] labelWeight) {
+		int maxDegree = 0;
+		for (int v = 0; v < deadEnd.length; v++) {
+			maxDegree = Math.max(maxDegree, offsets[v + 1] - offsets[v]);
+		}
+		double[] scaled = new double[maxDegree];
+		int[] small = new int[maxDegree];
+		int[] large = new int[maxDegree];
+		for (int v = 0; v < deadEnd.length; v++) {
+			int from = offsets[v];
+			int degree = offsets[v + 1] - from;
+			double total = 0;
+			for (int i = 0; i < degree; i++) {
+				total += labelWeight[labels[from + i]];
+			}
+			if (total <= 0) {
+				deadEnd[v] = true;
+				continue;
+			}
+			int numSmall = 0;
+			int numLarge = 0;
+			for (int i = 0; i < degree; i++) {
+				scaled[i] = labelWeight[labels[from + i]] * degree / total;
+				if (scaled[i] < 1)
+					small[numSmall++] = i;
+				else
+					large[numLarge++] = i;
+			}
+			while (numSmall > 0 && numLarge > 0) {
+				int s = small[--numSmall];
+				int l = large[--numLarge];
+				probability[from + s] = (float) scaled[s];
+				alias[from + s] = from + l;
+				scaled[l] = (scaled[l] + scaled[s]) - 1;
+				if (scaled[l] < 1)
+					small[numSmall++] = l;
+				else
+					large[numLarge++] = l;
+			}
+			// the remaining ones (up to rounding errors) have probability one
+			while (numLarge > 0) {
+				int l = large[--numLarge];
+				probability[from + l] = 1;
+				alias[from + l] = from + l;
+			}
+			while (numSmall > 0) {
+				int s = small[--numSmall];
+				probability[from + s] = 1;
+				alias[from + s] = from + s;
+			}
+		}
+	}
+
+	public FrozenStringGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * returns the position in the adjacency array of the next step from the given vertex, or -1 if there is none
+	 */
+	private int sample(int vertex, int index, double coin) {
+		if (deadEnd[vertex])
+			return -1;
+		int i = offsets[vertex] + index;
+		if (probability == null || coin < probability[i])
+			return i;
+		return alias[i];
+	}
+
+	private int degree(int vertex) {
+		return offsets[vertex + 1] - offsets[vertex];
+	}
+
+	/**
+	 * Returns the id of the next vertex of a walk at the given vertex or -1 if the walk can not continue.
+	 *
+	 * @param vertex
+	 * @param random
+	 * @return
+	 */
+	public int nextVertex(int vertex, SplittableRandom random) {
+		int degree = degree(vertex);
+		if (degree == 0)
+			return -1;
+		int i = sample(vertex, random.nextInt(degree), probability == null ? 0 : random.nextDouble());
+		return i < 0 ? -1 : neighbors[i];
+	}
+
+	public int nextVertex(int vertex, RandomGenerator random) {
+		int degree = degree(vertex);
+		if (degree == 0)
+			return -1;
+		int i = sample(vertex, random.nextInt(degree), probability == null ? 0 : random.nextDouble());
+		return i < 0 ? -1 : neighbors[i];
+	}
+
+	/**
+	 * Walks up to the given number of steps from the starting vertex id, returning the visited vertex ids (starting with the given one). The walk is shorter if
+	 * it arrives at a vertex it can not leave.
+	 *
+	 * @param start
+	 * @param length
+	 * @param random
+	 * @return
+	 */
+	public int[] walk(int start, int length, SplittableRandom random) {
+		int[] path = new int[length + 1];
+		path[0] = start;
+		int steps = 0;
+		int current = start;
+		while (steps < length) {
+			int next = nextVertex(current, random);
+			if (next < 0)
+				break;
+			path[++steps] = next;
+			current = next;
+		}
+		if (steps < length)
+			return Arrays.copyOf(path, steps + 1);
+		return path;
+	}
+
+	/**
+	 * Same as GraphAlgorithms.getVertexFromRandomWalk(): returns the vertex where the walk from the given vertex stops after at most limit steps. Returns the
+	 * starting vertex if it is not in the graph.
+	 *
+	 * @param random
+	 * @param startingVertex
+	 * @param limit
+	 * @return
+	 */
+	public String getVertexFromRandomWalk(RandomGenerator random, String startingVertex, int limit) {
+		int current = graph.getVertexId(startingVertex);
+		if (current < 0)
+			return startingVertex;
+		for (int step = 0; step < limit; step++) {
+			int next = nextVertex(current, random);
+			if (next < 0)
+				break;
+			current = next;
+		}
+		return graph.getVertexName(current);
+	}
+
+	/**
+	 * Runs the walks from the given starting vertex ids in parallel, walk i using the i-th SplittableRandom split from the one created with the given seed.
+	 *
+	 * @param starts
+	 * @param length
+	 * @param seed
+	 * @return
+	 */
+	public int[][] walks(int[] starts, int length, long seed) {
+		SplittableRandom[] randoms = splitRandoms(starts.length, seed);
+		int[][] paths = new int[starts.length][];
+		IntStream.range(0, starts.length).parallel().forEach(i -> {
+			paths[i] = walk(starts[i], length, randoms[i]);
+		});
+		return paths;
+	}
+
+	/**
+	 * returns the given number of generators split (sequentially, to be reproducible) from a generator created with the given seed
+	 */
+	private static SplittableRandom[] splitRandoms(int amount, long seed) {
+		SplittableRandom root = new SplittableRandom(seed);
+		SplittableRandom[] randoms = new SplittableRandom[amount];
+		for (int i = 0; i < amount; i++) {
+			randoms[i] = root.split();
+		}
+		return randoms;
+	}
+
+	/**
+	 * Returns the vertices where each of the given number of walks (from the given vertex, with at most limit steps) stops, computed in parallel. Reproducible
+	 * with the same seed.
+	 *
+	 * @param startingVertex
+	 * @param numberOfWalks
+	 * @param limit
+	 * @param seed
+	 * @return
+	 */
+	public String[] getVerticesFromRandomWalks(String startingVertex, int numberOfWalks, int limit, long seed) {
+		int start = graph.getVertexId(startingVertex);
+		String[] ends = new String[numberOfWalks];
+		if (start < 0) {
+			Arrays.fill(ends, startingVertex);
+			return ends;
+		}
+		int[] starts = new int[numberOfWalks];
+		Arrays.fill(starts, start);
+		int[][] paths = walks(starts, limit, seed);
+		for (int i = 0; i < numberOfWalks; i++) {
+			ends[i] = graph.getVertexName(paths[i][paths[i].length - 1]);
+		}
+		return ends;
+	}
+
+	/**
+	 * SAFE, returns the vertices visited by the given number of walks (from the given vertex, with at most the given length), computed in parallel. Meant for
+	 * sampling a connected subgraph around a vertex. Reproducible with the same seed.
+	 *
+	 * @param startingVertex
+	 * @param numberOfWalks
+	 * @param length
+	 * @param seed
+	 * @return
+	 */
+	public HashSet<String> sampleVertices(String startingVertex, int numberOfWalks, int length, long seed) {
+		HashSet<String> sampled = new HashSet<>();
+		int start = graph.getVertexId(startingVertex);
+		if (start < 0)
+			return sampled;
+		int[] starts = new int[numberOfWalks];
+		Arrays.fill(starts, start);
+		int[][] paths = walks(starts, length, seed);
+		for (int[] path : paths) {
+			for (int v : path) {
+				sampled.add(graph.getVertexName(v));
+			}
+		}
+		return sampled;
+	}
+
+}
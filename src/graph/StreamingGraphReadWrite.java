@@ -0,0 +1,604 @@
+package graph;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Scanner;
+import java.util.Spliterator;
+import java.util.StringTokenizer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import utils.CompressedFiles;
+import utils.VariousUtils;
+
+/**
+ * One pass, bounded memory, reading and writing of the text graph formats of GraphReadWrite (CSV, TSV, TGF, Prolog and Divago) for files too large to be
+ * loaded into a StringGraph. The readers return lazily parsed streams of edges which must be closed (try-with-resources) to release the file. The line based
+ * formats are read through a spliterator over a byte range of the file which splits at line boundaries, so the streams may be made parallel; TGF keeps only
+ * its vertex table in memory. The writers consume a stream of edges in encounter order (parallel streams included).
+ *
+ * @author jcfgonc@gmail.com
+ */
+public class StreamingGraphReadWrite {
+	// byte ranges smaller than this are not split
+	private static final int MINIMUM_SPLIT_SIZE = 1 << 20;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Reads the lines of a byte range of a file. The range must start at the beginning of a line and end after a newline (or at the end of the file).
+	 */
+	private static class LineReader {
+		private final FileChannel channel;
+		private long position;
+		private long end;
+		private ByteBuffer buffer;
+		// file offset of the buffer's first byte
+		private long bufferStart;
+		private byte[] line;
+
+		LineReader(FileChannel channel, long start, long end) {
+			this.channel = channel;
+			this.position = start;
+			this.end = end;
+			this.line = new byte[256];
+		}
+
+		/**
+		 * returns the next line (without the newline) or null at the end of the range
+		 */
+		String readLine() throws IOException {
+			if (position >= end)
+				return null;
+			boolean skipBOM = position == 0;
+			int length = 0;
+			while (true) {
+				if (buffer == null || position < bufferStart || position >= bufferStart + buffer.limit())
+					fill();
+				int from = (int) (position - bufferStart);
+				int to = (int) Math.min(buffer.limit(), end - bufferStart);
+				int i = from;
+				while (i < to && buffer.get(i) != '\n') {
+					i++;
+				}
+				int amount = i - from;
+				if (length + amount > line.length)
+					line = Arrays.copyOf(line, Math.max(length + amount, line.length * 2));
+				buffer.get(from, line, length, amount);
+				length += amount;
+				position = bufferStart + i;
+				if (i < to) {
+					// skip the newline
+					position++;
+					break;
+				}
+				if (position >= end)
+					break;
+			}
+			int start = 0;
+			if (skipBOM && length >= 3 && line[0] == (byte) 0xEF && line[1] == (byte) 0xBB && line[2] == (byte) 0xBF)
+				start = 3;
+			return new String(line, start, length - start, StandardCharsets.UTF_8);
+		}
+
+		private void fill() throws IOException {
+			if (buffer == null)
+				buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			buffer.clear();
+			buffer.limit((int) Math.min(BUFFER_SIZE, end - position));
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) < 0)
+					break;
+			}
+			buffer.flip();
+			if (!buffer.hasRemaining())
+				throw new IOException("unexpected end of file at offset " + position);
+			bufferStart = position;
+		}
+
+		/**
+		 * returns the offset following the first newline at or after the given position, or the end of the range if there is none
+		 */
+		long findLineEnd(long from) throws IOException {
+			ByteBuffer scan = ByteBuffer.allocate(1 << 12);
+			while (from < end) {
+				scan.clear();
+				scan.limit((int) Math.min(scan.capacity(), end - from));
+				int read = channel.read(scan, from);
+				if (read <= 0)
+					break;
+				for (int i = 0; i < read; i++) {
+					if (scan.get(i) == '\n')
+						return from + i + 1;
+				}
+				from += read;
+			}
+			return end;
+		}
+	}
+
+	/**
+	 * Parses the lines of a byte range into edges, splitting the range in two halves (at a line boundary) for parallel streams.
+	 */
+	private static class LineSpliterator implements Spliterator<StringEdge> {
+		private final FileChannel channel;
+		private final LineReader reader;
+		// returns null for lines without an edge
+		private final Function<String, StringEdge> parser;
+
+		LineSpliterator(FileChannel channel, long start, long end, Function<String, StringEdge> parser) {
+			this.channel = channel;
+			this.reader = new LineReader(channel, start, end);
+			this.parser = parser;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super StringEdge> action) {
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					StringEdge edge = parser.apply(line);
+					if (edge != null) {
+						action.accept(edge);
+						return true;
+					}
+				}
+				return false;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public Spliterator<StringEdge> trySplit() {
+			long remaining = reader.end - reader.position;
+			if (remaining < MINIMUM_SPLIT_SIZE)
+				return null;
+			try {
+				long middle = reader.findLineEnd(reader.position + remaining / 2);
+				if (middle >= reader.end)
+					return null;
+				// this one keeps the second half, the returned one gets the first (encounter order)
+				LineSpliterator prefix = new LineSpliterator(channel, reader.position, middle, parser);
+				reader.position = middle;
+				return prefix;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public long estimateSize() {
+			return reader.end - reader.position;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL | IMMUTABLE;
+		}
+	}
+
+	private static Stream<StringEdge> streamLines(FileChannel channel, long start, Function<String, StringEdge> parser) throws IOException {
+		LineSpliterator spliterator = new LineSpliterator(channel, start, channel.size(), parser);
+		return StreamSupport.stream(spliterator, false).onClose(() -> close(channel));
+	}
+
+	private static Stream<StringEdge> streamLines(String filename, Function<String, StringEdge> parser) throws IOException {
+		if (CompressedFiles.isCompressed(filename))
+			return streamLines(newReader(filename), parser);
+		return streamLines(FileChannel.open(Paths.get(filename), StandardOpenOption.READ), 0, parser);
+	}
+
+	/**
+	 * sequential stream of the remaining lines of the reader (compressed files can not be split)
+	 */
+	private static Stream<StringEdge> streamLines(BufferedReader br, Function<String, StringEdge> parser) {
+		return br.lines().map(parser).filter(edge -> edge != null).onClose(() -> close(br));
+	}
+
+	/**
+	 * opens the (possibly compressed) file, skipping the UTF-8 byte order mark
+	 */
+	private static BufferedReader newReader(String filename) throws IOException {
+		BufferedReader br = CompressedFiles.newBufferedReader(filename);
+		try {
+			br.mark(1);
+			if (br.read() != '\uFEFF')
+				br.reset();
+		} catch (IOException e) {
+			br.close();
+			throw e;
+		}
+		return br;
+	}
+
+	private static void close(Closeable closeable) {
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static StringEdge createEdge(String source, String target, String label) {
+		if (source.isEmpty() || target.isEmpty() || label.isEmpty())
+			return null;
+		return new StringEdge(source, target, label);
+	}
+
+	private static StringEdge parseSeparatedLine(String line, char separator) {
+		if (line.startsWith("#"))
+			return null;
+		String[] tokens = VariousUtils.fastSplit(line, separator);
+		if (tokens.length != 3)
+			return null;
+		return createEdge(tokens[0].strip(), tokens[2].strip(), tokens[1].strip());
+	}
+
+	private static StringEdge parseDivagoLine(String line) {
+		line = line.strip();
+		if (!line.startsWith("r("))
+			return null;
+		int from = line.indexOf(',');
+		int to = line.lastIndexOf(')');
+		if (from < 0 || to < from)
+			return null;
+		StringTokenizer st = new StringTokenizer(line.substring(from + 1, to), ",");
+		if (st.countTokens() < 3)
+			return null;
+		String source = st.nextToken().strip();
+		String label = st.nextToken().strip();
+		String target = st.nextToken().strip();
+		return createEdge(source, target, label);
+	}
+
+	private static StringEdge parsePrologFact(String fact) {
+		// of the form p(a,b)
+		fact = fact.strip();
+		int open = fact.indexOf('(');
+		int comma = fact.indexOf(',');
+		int close = fact.indexOf(')');
+		if (open < 0 || comma < open || close < comma)
+			return null;
+		String relation = fact.substring(0, open).strip();
+		String source = fact.substring(open + 1, comma).strip();
+		String target = fact.substring(comma + 1, close).strip();
+		return createEdge(source, target, relation);
+	}
+
+	/**
+	 * returns the rest of the tokens separated by a space, as GraphReadWrite.getTGFlineLabel()
+	 */
+	private static String getTGFLabel(StringTokenizer st) {
+		StringBuilder label = new StringBuilder();
+		while (st.hasMoreTokens()) {
+			label.append(st.nextToken());
+			if (st.hasMoreTokens())
+				label.append(' ');
+		}
+		return label.toString();
+	}
+
+	/**
+	 * Returns the edges of the given CSV file (as GraphReadWrite.readCSV(), lines starting with # are comments).
+	 *
+	 * @param filename
+	 * @return
+	 * @throws IOException
+	 */
+	public static Stream<StringEdge> streamCSV(String filename) throws IOException {
+		return streamLines(filename, line -> parseSeparatedLine(line, ','));
+	}
+
+	public static Stream<StringEdge> streamTSV(String filename) throws IOException {
+		return streamLines(filename, line -> parseSeparatedLine(line, '\t'));
+	}
+
+	public static Stream<StringEdge> streamDivago(String filename) throws IOException {
+		return streamLines(filename, StreamingGraphReadWrite::parseDivagoLine);
+	}
+
+	/**
+	 * Returns the edges of the given TGF file. The vertex table (before the # line) is read now, the edges lazily.
+	 *
+	 * @param filename
+	 * @return
+	 * @throws IOException
+	 */
+	public static Stream<StringEdge> streamTGF(String filename) throws IOException {
+		if (CompressedFiles.isCompressed(filename))
+			return streamCompressedTGF(filename);
+		FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+		try {
+			HashMap<String, String> nodeLabels = new HashMap<>();
+			LineReader reader = new LineReader(channel, 0, channel.size());
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.strip();
+				if (line.isEmpty())
+					continue;
+				if (line.startsWith("#"))
+					break;
+				StringTokenizer st = new StringTokenizer(line, "\t ");
+				String nodeID = st.nextToken();
+				nodeLabels.put(nodeID, getTGFLabel(st));
+			}
+			return streamLines(channel, reader.position, edgeLine -> parseTGFEdge(edgeLine, nodeLabels));
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private static Stream<StringEdge> streamCompressedTGF(String filename) throws IOException {
+		BufferedReader br = newReader(filename);
+		try {
+			HashMap<String, String> nodeLabels = new HashMap<>();
+			String line;
+			while ((line = br.readLine()) != null) {
+				line = line.strip();
+				if (line.isEmpty())
+					continue;
+				if (line.startsWith("#"))
+					break;
+				StringTokenizer st = new StringTokenizer(line, "\t ");
+				String nodeID = st.nextToken();
+				nodeLabels.put(nodeID, getTGFLabel(st));
+			}
+			return streamLines(br, edgeLine -> parseTGFEdge(edgeLine, nodeLabels));
+		} catch (IOException | RuntimeException e) {
+			br.close();
+			throw e;
+		}
+	}
+
+	private static StringEdge parseTGFEdge(String line, HashMap<String, String> nodeLabels) {
+		StringTokenizer st = new StringTokenizer(line.strip(), "\t ");
+		if (st.countTokens() < 2)
+			return null;
+		String source = nodeLabels.get(st.nextToken());
+		String target = nodeLabels.get(st.nextToken());
+		if (source == null || target == null)
+			return null;
+		return createEdge(source, target, getTGFLabel(st));
+	}
+
+	/**
+	 * Returns the edges of the given Prolog file, one fact relation(source,target) per edge. Facts may span multiple lines, so the file is tokenized
+	 * sequentially (parallel streams process it in batches).
+	 *
+	 * @param filename
+	 * @return
+	 * @throws IOException
+	 */
+	public static Stream<StringEdge> streamProlog(String filename) throws IOException {
+		Scanner sc = new Scanner(CompressedFiles.newBufferedReader(filename));
+		sc.useDelimiter(Pattern.compile("[\\s]*\\.[\\s]*"));
+		return sc.tokens().map(StreamingGraphReadWrite::parsePrologFact).filter(edge -> edge != null).onClose(sc::close);
+	}
+
+	/**
+	 * Returns the edges of the given file, whose format is given by its extension (as GraphReadWrite.readAutoDetect()). Gzip and zip compressed files (kb.csv.gz,
+	 * ...) are decompressed in a separate thread and streamed sequentially.
+	 *
+	 * @param filename
+	 * @return
+	 * @throws IOException
+	 */
+	public static Stream<StringEdge> streamAutoDetect(String filename) throws IOException {
+		String extension = CompressedFiles.getExtension(filename);
+		if (extension.equals("csv"))
+			return streamCSV(filename);
+		if (extension.equals("tsv"))
+			return streamTSV(filename);
+		if (extension.equals("dt"))
+			return streamDivago(filename);
+		if (extension.equals("tgf"))
+			return streamTGF(filename);
+		if (extension.equals("pro") || extension.equals("pl"))
+			return streamProlog(filename);
+		throw new IllegalArgumentException("unknown file extension: " + extension);
+	}
+
+	/**
+	 * Calls the consumer with each edge of the given file (see streamAutoDetect()).
+	 *
+	 * @param filename
+	 * @param consumer
+	 * @throws IOException
+	 */
+	public static void forEachEdge(String filename, Consumer<StringEdge> consumer) throws IOException {
+		try (Stream<StringEdge> edges = streamAutoDetect(filename)) {
+			edges.forEachOrdered(consumer);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * a consumer of edges which may fail with an IOException
+	 */
+	private interface EdgeWriter {
+		void write(StringEdge edge) throws IOException;
+	}
+
+	private static void writeEdges(Stream<StringEdge> edges, EdgeWriter writer) throws IOException {
+		try {
+			edges.forEachOrdered(edge -> {
+				try {
+					writer.write(edge);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static BufferedWriter newWriter(String filename) throws IOException {
+		return CompressedFiles.newBufferedWriter(filename);
+	}
+
+	/**
+	 * Writes the edges to the given CSV file (as GraphReadWrite.writeCSV()).
+	 *
+	 * @param filename
+	 * @param edges
+	 * @throws IOException
+	 */
+	public static void writeCSV(String filename, Stream<StringEdge> edges) throws IOException {
+		try (BufferedWriter bw = newWriter(filename)) {
+			writeEdges(edges, edge -> {
+				bw.write(edge.getSource());
+				bw.write(',');
+				bw.write(edge.getLabel());
+				bw.write(',');
+				bw.write(edge.getTarget());
+				bw.newLine();
+			});
+		}
+	}
+
+	public static void writeTSV(String filename, Stream<StringEdge> edges) throws IOException {
+		try (BufferedWriter bw = newWriter(filename)) {
+			writeEdges(edges, edge -> {
+				bw.write(edge.getSource());
+				bw.write('\t');
+				bw.write(edge.getLabel());
+				bw.write('\t');
+				bw.write(edge.getTarget());
+				bw.newLine();
+			});
+		}
+	}
+
+	public static void writePRO(String filename, Stream<StringEdge> edges) throws IOException {
+		try (BufferedWriter bw = newWriter(filename)) {
+			writeEdges(edges, edge -> {
+				bw.write(String.format("%s(%s,%s).", GraphReadWrite.removeComma(edge.getLabel()), GraphReadWrite.removeComma(edge.getSource()),
+						GraphReadWrite.removeComma(edge.getTarget())));
+				bw.newLine();
+			});
+		}
+	}
+
+	public static void writeDT(String filename, Stream<StringEdge> edges, String namespace) throws IOException {
+		try (BufferedWriter bw = newWriter(filename)) {
+			bw.write(":-multifile r/4." + System.lineSeparator());
+			bw.newLine();
+			writeEdges(edges, edge -> {
+				bw.write(String.format("r(%s,%s,%s,%s).", namespace, GraphReadWrite.removeComma(edge.getSource()), GraphReadWrite.removeComma(edge.getLabel()),
+						GraphReadWrite.removeComma(edge.getTarget())));
+				bw.newLine();
+			});
+		}
+	}
+
+	/**
+	 * Writes the edges to the given TGF file. As the vertex table comes first, the edges are written to a temporary file (in the same directory) which is
+	 * appended after the table (and compressed along with it, for .gz and .zip files). Only the vertex ids are kept in memory.
+	 *
+	 * @param filename
+	 * @param edges
+	 * @throws IOException
+	 */
+	public static void writeTGF(String filename, Stream<StringEdge> edges) throws IOException {
+		Path path = Paths.get(filename).toAbsolutePath();
+		Path temporary = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".edges");
+		try {
+			Object2IntOpenHashMap<String> vertexID = new Object2IntOpenHashMap<>();
+			// vertices in order of appearance
+			ArrayList<String> vertices = new ArrayList<>();
+			try (BufferedWriter bw = newWriter(temporary.toString())) {
+				writeEdges(edges, edge -> {
+					int sourceID = getTGFVertexID(edge.getSource(), vertexID, vertices);
+					int targetID = getTGFVertexID(edge.getTarget(), vertexID, vertices);
+					bw.write(sourceID + " " + targetID + " " + edge.getLabel());
+					bw.newLine();
+				});
+			}
+			try (OutputStream os = CompressedFiles.newOutputStream(filename); BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8))) {
+				for (int i = 0; i < vertices.size(); i++) {
+					bw.write((i + 1) + " " + vertices.get(i));
+					bw.newLine();
+				}
+				bw.write("#");
+				bw.newLine();
+				bw.flush();
+				Files.copy(temporary, os);
+			}
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	private static int getTGFVertexID(String vertex, Object2IntOpenHashMap<String> vertexID, ArrayList<String> vertices) {
+		int id = vertexID.getInt(vertex);
+		if (id == 0) {
+			vertices.add(vertex);
+			id = vertices.size();
+			vertexID.put(vertex, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Writes the edges to the given file, whose format is given by its extension (the Divago namespace is the file name without extension).
+	 *
+	 * @param filename
+	 * @param edges
+	 * @throws IOException
+	 */
+	public static void writeAutoDetect(String filename, Stream<StringEdge> edges) throws IOException {
+		String extension = CompressedFiles.getExtension(filename);
+		if (extension.equals("csv")) {
+			writeCSV(filename, edges);
+		} else if (extension.equals("tsv")) {
+			writeTSV(filename, edges);
+		} else if (extension.equals("dt")) {
+			String name = Paths.get(CompressedFiles.getUncompressedName(filename)).getFileName().toString();
+			writeDT(filename, edges, name.substring(0, name.lastIndexOf('.')));
+		} else if (extension.equals("tgf")) {
+			writeTGF(filename, edges);
+		} else if (extension.equals("pro") || extension.equals("pl")) {
+			writePRO(filename, edges);
+		} else {
+			throw new IllegalArgumentException("unknown file extension: " + extension);
+		}
+	}
+
+	/**
+	 * Converts the input file to the output file's format (given by their extensions) in a single pass, without loading the graph.
+	 *
+	 * @param inputFilename
+	 * @param outputFilename
+	 * @throws IOException
+	 */
+	public static void convert(String inputFilename, String outputFilename) throws IOException {
+		try (Stream<StringEdge> edges = streamAutoDetect(inputFilename)) {
+			writeAutoDetect(outputFilename, edges);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+}
@@ -5,6 +5,7 @@ import java.math.BigInteger;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 
+import structures.StringInterner;
 import utils.VariousUtils;
 
 public class StringEdge implements Comparable<StringEdge>, Serializable, Cloneable {
@@ -79,6 +80,9 @@ public class StringEdge implements Comparable<StringEdge>, Serializable, Cloneab
 		if (getClass() != obj.getClass())
 			return false;
 		StringEdge other = (StringEdge) obj;
+		// fast path for edges with interned (canonical) strings
+		if (label == other.label && source == other.source && target == other.target)
+			return true;
 		return label.contentEquals(other.label) && // ---
 				source.contentEquals(other.source) && // ---
 				target.contentEquals(other.target);
@@ -123,6 +127,47 @@ public class StringEdge implements Comparable<StringEdge>, Serializable, Cloneab
 		hashcode = prime * hashcode + target.hashCode();
 	}
 
+	/**
+	 * Returns the lower 64 bits of a 128-bit hash of this edge's contents (label, source and target). Unlike hashCode() it is suited for fingerprinting
+	 * whole graphs.
+	 * 
+	 * @return
+	 */
+	public long getContentHashLow() {
+		return contentHash(0xcbf29ce484222325L, 0x100000001b3L);
+	}
+
+	/**
+	 * Returns the upper 64 bits of a 128-bit hash of this edge's contents (label, source and target).
+	 * 
+	 * @return
+	 */
+	public long getContentHashHigh() {
+		return contentHash(0x84222325cbf29ce4L, 0x9e3779b97f4a7c15L);
+	}
+
+	private long contentHash(long seed, long multiplier) {
+		long h = seed;
+		h = hashChars(h, multiplier, label);
+		h = hashChars(h, multiplier, source);
+		h = hashChars(h, multiplier, target);
+		// murmur3 64-bit finalizer
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private static long hashChars(long h, long multiplier, String s) {
+		for (int i = 0; i < s.length(); i++) {
+			h = (h ^ s.charAt(i)) * multiplier;
+		}
+		// length acts as the field separator
+		return (h ^ s.length()) * multiplier;
+	}
+
 	public byte[] getBytes() {
 		String merge = label + "\0" + source + "\0" + target + "\0";
 		byte[] byteArray = merge.getBytes(Charset.forName("UTF-8"));
@@ -214,6 +259,22 @@ public class StringEdge implements Comparable<StringEdge>, Serializable, Cloneab
 		return newEdge;
 	}
 
+	/**
+	 * Returns this edge with its source, target and label replaced by their canonical instances from the given dictionary. Returns this edge if all of them
+	 * are already canonical, a new edge otherwise.
+	 * 
+	 * @param interner
+	 * @return
+	 */
+	public StringEdge intern(StringInterner interner) {
+		String s = interner.intern(source);
+		String t = interner.intern(target);
+		String l = interner.intern(label);
+		if (s == source && t == target && l == label)
+			return this;
+		return new StringEdge(s, t, l);
+	}
+
 	/**
 	 * Returns a new edge with the same relation and reversed source / target vertices.
 	 * 
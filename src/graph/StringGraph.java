@@ -1,16 +1,20 @@
 package graph;
 
 import java.io.Serializable;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
-import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import structures.StringInterner;
+import utils.VariousUtils;
 
 /**
  * A directed multigraph where both vertices and edges are String. A directed
@@ -57,25 +61,64 @@ public class StringGraph implements Serializable {
 
 	// DirectedPseudograph<String, StringEdge> graph;
 	private DirectedMultiGraphOld<String, StringEdge> graph;
+	// (vertex,relation)->edges and relation->edges
+	private EdgeLabelIndex labelIndex = new EdgeLabelIndex();
+	// order-independent 128-bit digest of the edge set, the sum of every edge's content hash
+	private long digestLow;
+	private long digestHigh;
+	// canonical vertex and relation strings, possibly shared with other graphs
+	private StringInterner interner;
+	// version of this graph, incremented on every change
+	private long modificationCount;
+	// optional journal of the latest changes
+	private transient EdgeChangeLog changeLog;
+	// optional degree bucket queues
+	private transient DegreeIndex degreeIndex;
+	// optional namespace -> vertices/edges mappings
+	private transient NamespaceIndex namespaceIndex;
 	private final boolean allowSelfLoops = false;
 	private final boolean allowSymmetry = true;
+	// smaller batches are added edge by edge
+	private static final int BULK_INSERTION_THRESHOLD = 256;
 
 	public StringGraph(int numEdges, int inEdges, int outEdges, int numVertices) {
 		this.graph = new DirectedMultiGraphOld<String, StringEdge>(numEdges, inEdges, outEdges, numVertices);
+		this.interner = new StringInterner();
 	}
 
 	public StringGraph() {
 		this.graph = new DirectedMultiGraphOld<String, StringEdge>();
+		this.interner = new StringInterner();
 	}
 
+	/**
+	 * creates an empty graph canonicalizing its strings with the given (possibly shared) dictionary
+	 * 
+	 * @param interner
+	 */
+	public StringGraph(StringInterner interner) {
+		this.graph = new DirectedMultiGraphOld<String, StringEdge>();
+		this.interner = interner;
+	}
+
+	/**
+	 * copies the given graph, sharing its string dictionary. O(1), see snapshot(). The dictionary holds its strings weakly, so the strings added by the copy
+	 * are retained only while the copy (or another graph sharing the dictionary) references them, not for the lifetime of the original graph.
+	 * 
+	 * @param otherGraph
+	 */
 	public StringGraph(StringGraph otherGraph) {
-//		this.graph = new DirectedMultiGraphOld<String, StringEdge>();
-		this.graph = DirectedMultiGraphOld.allocateSameSize(otherGraph.graph);
-		addEdges(otherGraph);
+		this.graph = otherGraph.graph.snapshot();
+		this.labelIndex = otherGraph.labelIndex.snapshot();
+		this.digestLow = otherGraph.digestLow;
+		this.digestHigh = otherGraph.digestHigh;
+		this.interner = otherGraph.interner;
+		this.modificationCount = otherGraph.modificationCount;
 	}
 
 	protected StringGraph(StringGraph otherGraph, boolean allocateOnly) {
 		this.graph = DirectedMultiGraphOld.allocateSameSize(otherGraph.graph);
+		this.interner = otherGraph.interner;
 		if (!allocateOnly) {
 			addEdges(otherGraph);
 		}
@@ -90,6 +133,7 @@ public class StringGraph implements Serializable {
 	@SuppressWarnings("unchecked")
 	public <V, E> StringGraph(DirectedMultiGraphOld<V, E> otherGraph) {
 		this.graph = (DirectedMultiGraphOld<String, StringEdge>) DirectedMultiGraphOld.allocateSameSize(otherGraph); // UNTESTED
+		this.interner = new StringInterner();
 		for (E edge : otherGraph.edgeSet()) {
 			String edgeSource = otherGraph.getEdgeSource(edge).toString();
 			String edgeTarget = otherGraph.getEdgeTarget(edge).toString();
@@ -141,9 +185,67 @@ public class StringGraph implements Serializable {
 		addEdges(edges);
 	}
 
+	/**
+	 * Adds the given edges, following the same rules as addEdge(). Large batches are validated, deduplicated and mirrored (synonym/antonym) in a single pass
+	 * and the graph's internal structures are resized once for the whole batch.
+	 * 
+	 * @param edges
+	 */
 	public void addEdges(Collection<StringEdge> edges) {
-		for (StringEdge edge : edges) {
-			addEdge(edge);
+		addEdges(edges, false);
+	}
+
+	/**
+	 * Adds the given edges in bulk (see addEdges(Collection)). If parallel is true the batch is prepared with all the available cores, the adjacency is built
+	 * in parallel partitioned by vertex (see DirectedMultiGraphOld.addNewEdgesParallel()) and the relation indices are filled concurrently with it, all before
+	 * this method returns.
+	 * 
+	 * @param edges
+	 * @param parallel
+	 */
+	public void addEdges(Collection<StringEdge> edges, boolean parallel) {
+		if (edges.size() < BULK_INSERTION_THRESHOLD) {
+			for (StringEdge edge : edges) {
+				addEdge(edge);
+			}
+			return;
+		}
+
+		// validated, interned and mirrored, without the edges already in the graph
+		Collection<StringEdge> batch;
+		Stream<StringEdge> stream;
+		if (parallel) {
+			// deduplicated here, the indices are filled concurrently and cannot tell which edges were new
+			batch = ConcurrentHashMap.newKeySet(edges.size() * 2);
+			stream = edges.parallelStream();
+		} else {
+			// deduplicated by insertEdge()
+			batch = new ArrayList<>(edges.size() + (edges.size() >> 4));
+			stream = edges.stream();
+		}
+		stream.filter(this::isValidEdge).map(edge -> edge.intern(interner)).forEach(edge -> {
+			if (!containsEdge(edge))
+				batch.add(edge);
+			if (isMirroredRelation(edge.getLabel())) {
+				StringEdge reverse = edge.reverse();
+				if (!containsEdge(reverse))
+					batch.add(reverse);
+			}
+		});
+		if (batch.isEmpty())
+			return;
+
+		if (parallel) {
+			// the adjacency (itself built in parallel, partitioned by vertex) and the relation indices are independent, fill them at the same time
+			CompletableFuture<Void> adjacency = CompletableFuture.runAsync(() -> graph.addNewEdgesParallel(batch, StringEdge::getSource, StringEdge::getTarget));
+			for (StringEdge edge : batch) {
+				edgeAdded(edge);
+			}
+			adjacency.join();
+		} else {
+			for (StringEdge edge : batch) {
+				insertEdge(edge);
+			}
 		}
 	}
 
@@ -185,10 +287,6 @@ public class StringGraph implements Serializable {
 	 */
 	public boolean addEdge(StringEdge edge) {
 
-		String source = edge.getSource();
-		String target = edge.getTarget();
-		String label = edge.getLabel();
-
 //		if (edge.sourceIsBlend() && edge.targetIsBlend())
 //			System.lineSeparator();
 
@@ -202,6 +300,30 @@ public class StringGraph implements Serializable {
 //			return false;
 //		}
 
+		if (!isValidEdge(edge))
+			return false;
+
+		edge = edge.intern(interner);
+		insertEdge(edge);
+
+		if (isMirroredRelation(edge.getLabel())) {
+			insertEdge(edge.reverse());
+		}
+
+		return true;
+	}
+
+	/**
+	 * returns false if the given edge must be ignored (loop or symmetry), throwing a RuntimeException if it is invalid
+	 * 
+	 * @param edge
+	 * @return
+	 */
+	private boolean isValidEdge(StringEdge edge) {
+		String source = edge.getSource();
+		String target = edge.getTarget();
+		String label = edge.getLabel();
+
 		if (!allowSelfLoops && source.equals(target)) {
 //			System.err.printf("LOOP: %s,%s,%s\n", source, label, target);
 			return false;
@@ -220,20 +342,199 @@ public class StringGraph implements Serializable {
 			throw new RuntimeException(String.format("EMPTY RELATION: %s,%s,%s\n", source, label, target));
 		}
 
-		this.graph.addEdge(source, target, edge);
+		return true;
+	}
 
-		if (label.equals("synonym") || label.equals("antonym")) {
-			this.graph.addEdge(target, source, edge.reverse());
-		}
+	/**
+	 * relations whose edges are added in both directions
+	 * 
+	 * @param label
+	 * @return
+	 */
+	private static boolean isMirroredRelation(String label) {
+		return label.equals("synonym") || label.equals("antonym");
+	}
 
+	/**
+	 * adds the edge to the graph and to the secondary indices, returning false if it already existed
+	 * 
+	 * @param edge
+	 * @return
+	 */
+	private boolean insertEdge(StringEdge edge) {
+		if (!graph.addEdge(edge.getSource(), edge.getTarget(), edge))
+			return false;
+		edgeAdded(edge);
+		return true;
+	}
+
+	/**
+	 * updates the secondary indices with an edge added to the adjacency
+	 * 
+	 * @param edge
+	 */
+	private void edgeAdded(StringEdge edge) {
+		labelIndex.add(edge);
+		digestLow += edge.getContentHashLow();
+		digestHigh += edge.getContentHashHigh();
+		modificationCount++;
+		if (changeLog != null)
+			changeLog.record(edge, true, modificationCount);
+		if (degreeIndex != null)
+			degreeIndex.add(edge);
+		if (namespaceIndex != null)
+			namespaceIndex.add(edge);
+	}
+
+	/**
+	 * removes the edge from the graph and from the secondary indices, returning false if it did not exist
+	 * 
+	 * @param edge
+	 * @return
+	 */
+	private boolean deleteEdge(StringEdge edge) {
+		if (!graph.removeEdge(edge))
+			return false;
+		edgeRemoved(edge);
 		return true;
 	}
 
+	/**
+	 * updates the secondary indices with an edge removed from the adjacency
+	 * 
+	 * @param edge
+	 */
+	private void edgeRemoved(StringEdge edge) {
+		labelIndex.remove(edge);
+		digestLow -= edge.getContentHashLow();
+		digestHigh -= edge.getContentHashHigh();
+		modificationCount++;
+		if (changeLog != null)
+			changeLog.record(edge, false, modificationCount);
+		if (degreeIndex != null)
+			degreeIndex.remove(edge);
+		if (namespaceIndex != null)
+			namespaceIndex.remove(edge);
+	}
+
+	/**
+	 * Returns the version of this graph: a counter incremented on every change (edge addition/removal, clear()). Equal versions of the same graph mean no
+	 * changes in between.
+	 * 
+	 * @return
+	 */
+	public long getVersion() {
+		return modificationCount;
+	}
+
+	/**
+	 * Starts recording the latest changes of this graph in a journal keeping up to the given number of edge additions/removals, see changesSince(). Older
+	 * changes are forgotten.
+	 * 
+	 * @param capacity
+	 */
+	public void enableChangeLog(int capacity) {
+		if (changeLog != null && changeLog.getCapacity() == capacity)
+			return;
+		changeLog = new EdgeChangeLog(capacity, modificationCount);
+	}
+
+	public void disableChangeLog() {
+		changeLog = null;
+	}
+
+	public boolean isChangeLogEnabled() {
+		return changeLog != null;
+	}
+
+	/**
+	 * Returns the net edges added/removed since the given version (see getVersion()) in O(changes), or null if the change log is disabled or no longer holds
+	 * all the changes since that version. In that case the caller must compare the whole graphs.
+	 * 
+	 * @param version
+	 * @return
+	 */
+	public GraphDelta changesSince(long version) {
+		if (changeLog == null)
+			return null;
+		return changeLog.changesSince(version, modificationCount);
+	}
+
+	/**
+	 * Starts maintaining the degree index of this graph (total, incoming, outgoing and per relation degree bucket queues), built now in O(edges) and then
+	 * updated in O(1) on every change. Not kept by copies of this graph.
+	 */
+	public void enableDegreeIndex() {
+		if (degreeIndex != null)
+			return;
+		degreeIndex = new DegreeIndex();
+		for (StringEdge edge : graph.edgeSet()) {
+			degreeIndex.add(edge);
+		}
+	}
+
+	public void disableDegreeIndex() {
+		degreeIndex = null;
+	}
+
+	public boolean isDegreeIndexEnabled() {
+		return degreeIndex != null;
+	}
+
+	/**
+	 * UNSAFE, returns the degree index of this graph (see enableDegreeIndex()) or null if disabled.
+	 * 
+	 * @return
+	 */
+	public DegreeIndex getDegreeIndex() {
+		return degreeIndex;
+	}
+
+	/**
+	 * Starts maintaining the namespace index of this graph (namespace -> vertices and namespace -> edges), built now in O(edges) and then updated in O(1) on
+	 * every change. Each vertex's namespace is parsed only when the vertex is inserted. Not kept by copies of this graph.
+	 */
+	public void enableNamespaceIndex() {
+		if (namespaceIndex != null)
+			return;
+		namespaceIndex = new NamespaceIndex();
+		for (StringEdge edge : graph.edgeSet()) {
+			namespaceIndex.add(edge);
+		}
+	}
+
+	public void disableNamespaceIndex() {
+		namespaceIndex = null;
+	}
+
+	public boolean isNamespaceIndexEnabled() {
+		return namespaceIndex != null;
+	}
+
+	/**
+	 * UNSAFE, returns the namespace index of this graph (see enableNamespaceIndex()) or null if disabled.
+	 * 
+	 * @return
+	 */
+	public NamespaceIndex getNamespaceIndex() {
+		return namespaceIndex;
+	}
+
 	/**
 	 * clears this graph, removing all vertices and edges
 	 */
 	public void clear() {
 		graph.clear();
+		labelIndex.clear();
+		digestLow = 0;
+		digestHigh = 0;
+		modificationCount++;
+		if (changeLog != null)
+			changeLog.reset(modificationCount);
+		if (degreeIndex != null)
+			degreeIndex.clear();
+		if (namespaceIndex != null)
+			namespaceIndex.clear();
 	}
 
 	public boolean containsVertex(String vertex) {
@@ -256,17 +557,10 @@ public class StringGraph implements Serializable {
 	 * @return
 	 */
 	public Set<StringEdge> edgeSet(String edgeLabel) {
-		if (isEmpty())
+		Set<StringEdge> edges = labelIndex.getEdges(edgeLabel);
+		if (edges == null)
 			return unmodifiableEmptySet;
-
-		Set<StringEdge> edgeSet = graph.edgeSet_unsafe();
-		HashSet<StringEdge> newEdges = new HashSet<>(edgeSet.size() * 2, 0.5f);
-		for (StringEdge edge : edgeSet) {
-			if (edge.getLabel().equals(edgeLabel)) {
-				newEdges.add(edge);
-			}
-		}
-		return newEdges;
+		return new HashSet<>(edges);
 	}
 
 	/**
@@ -279,6 +573,59 @@ public class StringGraph implements Serializable {
 		return graph.edgesOf(vertex);
 	}
 
+	/**
+	 * UNSAFE, returns an unmodifiable view (not a copy) of both incoming and outgoing edges from the given vertex. The view changes as the graph changes and
+	 * must not be iterated while modifying the graph.
+	 * 
+	 * @param vertex
+	 * @return
+	 */
+	public Set<StringEdge> edgesOfView(String vertex) {
+		return graph.edgesOfView(vertex);
+	}
+
+	/**
+	 * Invokes the consumer for each incoming and outgoing edge of the given vertex, without allocating any set. The graph must not be modified by the consumer.
+	 * 
+	 * @param vertex
+	 * @param consumer
+	 */
+	public void forEachEdgeOf(String vertex, Consumer<StringEdge> consumer) {
+		graph.forEachEdgeOf(vertex, consumer);
+	}
+
+	/**
+	 * Invokes the consumer for each edge with the target as the given vertex. The graph must not be modified by the consumer.
+	 * 
+	 * @param vertex
+	 * @param consumer
+	 */
+	public void forEachIncoming(String vertex, Consumer<StringEdge> consumer) {
+		graph.forEachIncoming(vertex, consumer);
+	}
+
+	/**
+	 * Invokes the consumer for each edge with the source as the given vertex. The graph must not be modified by the consumer.
+	 * 
+	 * @param vertex
+	 * @param consumer
+	 */
+	public void forEachOutgoing(String vertex, Consumer<StringEdge> consumer) {
+		graph.forEachOutgoing(vertex, consumer);
+	}
+
+	/**
+	 * Invokes the consumer for each vertex connected to the given vertex, without allocating any set. A neighbor connected through multiple edges is visited
+	 * once per edge. The graph must not be modified by the consumer.
+	 * 
+	 * @param vertex
+	 * @param consumer
+	 */
+	public void forEachNeighbor(String vertex, Consumer<String> consumer) {
+		graph.forEachIncoming(vertex, edge -> consumer.accept(edge.getSource()));
+		graph.forEachOutgoing(vertex, edge -> consumer.accept(edge.getTarget()));
+	}
+
 	/**
 	 * SAFE
 	 * 
@@ -287,21 +634,15 @@ public class StringGraph implements Serializable {
 	 * @return
 	 */
 	public Set<StringEdge> edgesOf(String vertex, String relation) {
-		Set<StringEdge> edges = edgesOf(vertex);
-		if (edges != null) {
-
-			if (edges.isEmpty())
-				return unmodifiableEmptySet;
-
-			Iterator<StringEdge> iterator = edges.iterator();
-			while (iterator.hasNext()) {
-				StringEdge edge = iterator.next();
-				if (!edge.getLabel().equals(relation)) {
-					iterator.remove();
-				}
-			}
-		}
-		return edges;
+		Set<StringEdge> in = labelIndex.getIncoming(vertex, relation);
+		Set<StringEdge> out = labelIndex.getOutgoing(vertex, relation);
+		if (in == null && out == null)
+			return unmodifiableEmptySet;
+		if (in == null)
+			return new HashSet<>(out);
+		if (out == null)
+			return new HashSet<>(in);
+		return VariousUtils.mergeSets(in, out);
 	}
 
 	/**
@@ -313,11 +654,15 @@ public class StringGraph implements Serializable {
 	 * @return
 	 */
 	public Set<StringEdge> getUndirectedEdgesConnecting(String vertex0, String vertex1) {
-		Set<StringEdge> edgeSet0 = getEdgesConnecting(vertex0, vertex1);
-		Set<StringEdge> edgeSet1 = getEdgesConnecting(vertex1, vertex0);
-		HashSet<StringEdge> edgeSet = new HashSet<>((edgeSet0.size() + edgeSet1.size()) * 2);
-		edgeSet.addAll(edgeSet0);
-		edgeSet.addAll(edgeSet1);
+		HashSet<StringEdge> edgeSet = new HashSet<>();
+		graph.forEachIncoming(vertex0, edge -> {
+			if (edge.getSource().equals(vertex1))
+				edgeSet.add(edge);
+		});
+		graph.forEachOutgoing(vertex0, edge -> {
+			if (edge.getTarget().equals(vertex1))
+				edgeSet.add(edge);
+		});
 		return edgeSet;
 	}
 
@@ -374,21 +719,8 @@ public class StringGraph implements Serializable {
 	 * @return
 	 */
 	public Set<String> getNeighborVertices(String vertex) {
-		Set<StringEdge> edgesI = incomingEdgesOf(vertex);
-		Set<StringEdge> edgesO = outgoingEdgesOf(vertex);
-
-		HashSet<String> neighbors = new HashSet<>((edgesI.size() + edgesO.size()) * 2);
-
-		for (StringEdge edge : edgesI) {
-			neighbors.add(edge.getSource());
-			neighbors.add(edge.getTarget());
-		}
-
-		for (StringEdge edge : edgesO) {
-			neighbors.add(edge.getSource());
-			neighbors.add(edge.getTarget());
-		}
-
+		HashSet<String> neighbors = new HashSet<>(degreeOf(vertex) * 2);
+		forEachNeighbor(vertex, neighbors::add);
 		neighbors.remove(vertex);
 		return neighbors;
 	}
@@ -476,28 +808,48 @@ public class StringGraph implements Serializable {
 	 * @return
 	 */
 	public Set<StringEdge> incomingEdgesOf(String concept, String filter) {
-		Set<StringEdge> incoming = incomingEdgesOf(concept);
-		HashSet<StringEdge> edges = new HashSet<>(incoming.size() * 2);
-		for (StringEdge edge : incoming) {
-			if (edge.getLabel().equals(filter)) {
-				edges.add(edge);
-			}
-		}
-		return edges;
+		Set<StringEdge> incoming = labelIndex.getIncoming(concept, filter);
+		if (incoming == null)
+			return new HashSet<>(0);
+		return new HashSet<>(incoming);
 	}
 
 	public int numberOfEdges() {
 		return graph.edgeSet().size();
 	}
 
+	/**
+	 * Returns the number of edges with the given relation, in O(1).
+	 * 
+	 * @param label
+	 * @return
+	 */
 	public int numberOfEdges(String label) {
-		int num = 0;
-		for (StringEdge edge : edgeSet()) {
-			if (edge.getLabel().equals(label)) {
-				num++;
-			}
+		return labelIndex.numberOfEdges(label);
+	}
+
+	/**
+	 * Returns the number of distinct relations in this graph's edges, in O(1).
+	 * 
+	 * @return
+	 */
+	public int numberOfEdgeLabels() {
+		return labelIndex.getLabels().size();
+	}
+
+	/**
+	 * SAFE, returns the number of edges of each relation, in O(number of relations).
+	 * 
+	 * @return
+	 */
+	public Object2IntOpenHashMap<String> getRelationHistogram() {
+		Set<String> labels = labelIndex.getLabels();
+		Object2IntOpenHashMap<String> histogram = new Object2IntOpenHashMap<>(labels.size());
+		histogram.defaultReturnValue(0);
+		for (String label : labels) {
+			histogram.put(label, labelIndex.numberOfEdges(label));
 		}
-		return num;
+		return histogram;
 	}
 
 	public int numberOfVertices() {
@@ -522,18 +874,14 @@ public class StringGraph implements Serializable {
 	 * @return
 	 */
 	public Set<StringEdge> outgoingEdgesOf(String concept, String filter) {
-		Set<StringEdge> out = outgoingEdgesOf(concept);
-		HashSet<StringEdge> edges = new HashSet<>(out.size() * 2);
-		for (StringEdge edge : out) {
-			if (edge.getLabel().equals(filter)) {
-				edges.add(edge);
-			}
-		}
-		return edges;
+		Set<StringEdge> out = labelIndex.getOutgoing(concept, filter);
+		if (out == null)
+			return new HashSet<>(0);
+		return new HashSet<>(out);
 	}
 
 	public void removeEdge(StringEdge edgeToDelete) {
-		graph.removeEdge(edgeToDelete);
+		deleteEdge(edgeToDelete);
 	}
 
 	public void removeEdge(String source, String target, String label) {
@@ -562,7 +910,13 @@ public class StringGraph implements Serializable {
 	 * @return true if the graph contained the specified vertex; false otherwise.
 	 */
 	public void removeVertex(String vertex) {
-		graph.removeVertex(vertex);
+		if (!containsVertex(vertex))
+			return;
+
+		ArrayList<StringEdge> touchingEdges = new ArrayList<>(degreeOf(vertex));
+		touchingEdges.addAll(graph.incomingEdgesOf(vertex));
+		touchingEdges.addAll(graph.outgoingEdgesOf(vertex));
+		removeEdges(touchingEdges);
 	}
 
 	public void removeVertices(Collection<String> vertices) {
@@ -632,7 +986,9 @@ public class StringGraph implements Serializable {
 	}
 
 	public void removeEdges(Collection<StringEdge> toRemove) {
-		graph.removeEdges(toRemove);
+		for (StringEdge edge : toRemove) {
+			deleteEdge(edge);
+		}
 	}
 
 	public boolean containsEdge(StringEdge se) {
@@ -645,19 +1001,47 @@ public class StringGraph implements Serializable {
 
 	public void showStructureSizes() {
 		graph.showStructureSizes();
+		System.out.println("interner (number of canonical strings): " + interner.size());
+	}
+
+	/**
+	 * returns the dictionary used to canonicalize this graph's vertex and relation strings
+	 * 
+	 * @return
+	 */
+	public StringInterner getInterner() {
+		return interner;
+	}
+
+	/**
+	 * Returns a copy of this graph in O(1). Both graphs share their internal structures: the top-level tables are persistent hash tries, so a modification of
+	 * either graph copies only the O(log |E|) trie nodes on its path, plus the adjacency sets and the relation map of the vertices it touches the first time
+	 * they are modified (see DirectedMultiGraphOld.snapshot() and EdgeLabelIndex.snapshot()). No modification copies a whole table nor a whole relation's edge
+	 * set. Per-vertex views (UNSAFE sets) obtained before the snapshot may stop reflecting later changes to this graph.
+	 * 
+	 * @return
+	 */
+	public StringGraph snapshot() {
+		return new StringGraph(this);
+	}
+
+	/**
+	 * Returns an immutable and compact (CSR) copy of this graph, suited for read-only workloads. Later changes to this graph are not reflected in the returned
+	 * copy.
+	 *
+	 * @return
+	 */
+	public FrozenStringGraph freeze() {
+		return new FrozenStringGraph(this);
 	}
 
 	/**
-	 * Returns the set of relations/labels in this graph's edges.
+	 * SAFE, returns the set of relations/labels in this graph's edges, in O(number of relations).
 	 * 
 	 * @return
 	 */
 	public HashSet<String> getEdgeLabelSet() {
-		HashSet<String> edgeLabels = new HashSet<>(16, 0.333f);
-		for (StringEdge edge : edgeSet()) {
-			edgeLabels.add(edge.getLabel());
-		}
-		return edgeLabels;
+		return new HashSet<>(labelIndex.getLabels());
 	}
 
 	/**
@@ -695,12 +1079,9 @@ public class StringGraph implements Serializable {
 		String source = edge.getSource();
 		String target = edge.getTarget();
 
-		Set<StringEdge> sourceEdges = this.edgesOf(source);
-		Set<StringEdge> targetEdges = this.edgesOf(target);
-
-		HashSet<StringEdge> touching = new HashSet<>((sourceEdges.size() + targetEdges.size()) * 2);
-		touching.addAll(sourceEdges);
-		touching.addAll(targetEdges);
+		HashSet<StringEdge> touching = new HashSet<>((degreeOf(source) + degreeOf(target)) * 2);
+		forEachEdgeOf(source, touching::add);
+		forEachEdgeOf(target, touching::add);
 		touching.remove(edge);
 
 		return touching;
@@ -715,7 +1096,7 @@ public class StringGraph implements Serializable {
 	public HashSet<StringEdge> edgesOf(Collection<String> vertices) {
 		HashSet<StringEdge> edges = new HashSet<StringEdge>(1 << 10);
 		for (String vertex : vertices) {
-			edges.addAll(edgesOf(vertex));
+			forEachEdgeOf(vertex, edges::add);
 		}
 		return edges;
 	}
@@ -737,29 +1118,35 @@ public class StringGraph implements Serializable {
 
 	@Override
 	public int hashCode() {
-		return graph.hashCode();
+		return Long.hashCode(digestLow ^ digestHigh);
 	}
 
-	private void addBytesToArrayList(ByteArrayList byteList, byte[] bytes) {
-		for (byte b : bytes) {
-			byteList.add(b);
-		}
+	/**
+	 * Returns the lower 64 bits of this graph's content digest. O(1), maintained on every edge addition/removal.
+	 * 
+	 * @return
+	 */
+	public long getDigestLow() {
+		return digestLow;
+	}
+
+	/**
+	 * Returns the upper 64 bits of this graph's content digest. O(1), maintained on every edge addition/removal.
+	 * 
+	 * @return
+	 */
+	public long getDigestHigh() {
+		return digestHigh;
 	}
 
+	/**
+	 * Returns the 128-bit content digest (16 bytes, big endian, upper half first) of this graph. The digest is the commutative sum of the per-edge content
+	 * hashes, so it is independent of the edges' iteration order and equal graphs always have the same digest. O(1).
+	 * 
+	 * @return
+	 */
 	public byte[] accurateHashCode() {
-		ByteArrayList byteList = new ByteArrayList();
-		for (StringEdge edge : edgeSet()) {
-			// addBytesToArrayList(byteList, edge.getHashedBytes());
-			addBytesToArrayList(byteList, edge.getBytes());
-		}
-		MessageDigest md;
-		try {
-			md = MessageDigest.getInstance("SHA-256");
-		} catch (NoSuchAlgorithmException nsae) {
-			throw new InternalError("SHA-256 not supported", nsae);
-		}
-		byte[] d = md.digest(byteList.toByteArray());
-		return d;
+		return ByteBuffer.allocate(16).putLong(digestHigh).putLong(digestLow).array();
 	}
 
 	@Override
@@ -771,6 +1158,9 @@ public class StringGraph implements Serializable {
 		if (getClass() != obj.getClass())
 			return false;
 		StringGraph other = (StringGraph) obj;
+		// different digests imply different edge sets
+		if (digestLow != other.digestLow || digestHigh != other.digestHigh)
+			return false;
 		return graph.equals(other.graph);
 	}
 
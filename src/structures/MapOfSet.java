@@ -32,6 +32,27 @@ public class MapOfSet<K, V> implements Serializable {
 		map = new HashMap<K, Set<V>>(initialCapacity, loadFactor);
 	}
 
+	/**
+	 * Shallow copy: the mappings are copied, the mapped sets are shared with the other MapOfSet.
+	 * 
+	 * @param other
+	 */
+	public MapOfSet(MapOfSet<K, V> other) {
+		this(other, other.map.size());
+	}
+
+	/**
+	 * Shallow copy sized to hold the given number of keys without resizing: the mappings are copied, the mapped sets are shared with the other MapOfSet.
+	 * 
+	 * @param other
+	 * @param expectedKeys
+	 */
+	public MapOfSet(MapOfSet<K, V> other, int expectedKeys) {
+		this.loadFactor = other.loadFactor;
+		map = new HashMap<K, Set<V>>(Math.max(16, (int) (Math.max(expectedKeys, other.map.size()) / loadFactor) + 1), loadFactor);
+		map.putAll(other.map);
+	}
+
 	public void add(K key, Collection<V> values) {
 		// if values is empty and key hasn't been mapped create an empty set
 		if (values.isEmpty()) {
@@ -84,6 +105,26 @@ public class MapOfSet<K, V> implements Serializable {
 		return Collections.unmodifiableSet(s);
 	}
 
+	/**
+	 * UNSAFE, returns the internal set mapped to from the given key (or null).
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public Set<V> get_unsafe(K key) {
+		return map.get(key);
+	}
+
+	/**
+	 * Maps the given key to the given set, replacing the previous set (if any).
+	 * 
+	 * @param key
+	 * @param set
+	 */
+	public void put(K key, Set<V> set) {
+		map.put(key, set);
+	}
+
 	public boolean isEmpty() {
 		return map.isEmpty();
 	}
@@ -0,0 +1,617 @@
+package structures;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A hash map with an O(1) snapshot(): a hash array mapped trie (32-way, by the bits of the key's hash) whose nodes are shared between a map and its
+ * snapshots. Writing to a node shared with a snapshot copies only the path from the root to the changed entry (at most 7 nodes), never the whole map; the
+ * nodes created by a map since its last snapshot are its own and are modified in place. Lookups and updates are O(log32 n). Null keys are not supported.
+ * Not thread-safe, but a map and its snapshots may be used by different threads. Iterators are fail-fast.
+ *
+ * @author jcfgonc@gmail.com
+ * @param <K>
+ * @param <V>
+ */
+public class SnapshotHashMap<K, V> extends AbstractMap<K, V> implements Serializable {
+	private static final long serialVersionUID = 5893520871735461190L;
+	private static final Object NOT_FOUND = new Object();
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+	// extra entries allocated when growing an owned node
+	private static final int GROWTH = 4;
+
+	private transient Node root;
+	private transient int size;
+	private transient int modCount;
+	// owner of the nodes this map may modify in place, replaced on snapshot()
+	private transient Object edit = new Object();
+	private transient Set<Map.Entry<K, V>> entrySet;
+	private transient Set<K> keySet;
+
+	public SnapshotHashMap() {
+	}
+
+	public SnapshotHashMap(Map<? extends K, ? extends V> other) {
+		putAll(other);
+	}
+
+	private SnapshotHashMap(Node root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	/**
+	 * Returns a copy of this map in O(1). Both maps share their nodes, the nodes being copied (only along the path to the modified entry) as either map is
+	 * modified.
+	 *
+	 * @return
+	 */
+	public SnapshotHashMap<K, V> snapshot() {
+		// the existing nodes are no longer owned by this map
+		edit = new Object();
+		return new SnapshotHashMap<>(root, size);
+	}
+
+	/**
+	 * writes the number of entries followed by the keys and values
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(size);
+		for (Map.Entry<K, V> entry : entrySet()) {
+			out.writeObject(entry.getKey());
+			out.writeObject(entry.getValue());
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		edit = new Object();
+		int entries = in.readInt();
+		for (int i = 0; i < entries; i++) {
+			K key = (K) in.readObject();
+			V value = (V) in.readObject();
+			put(key, value);
+		}
+	}
+
+	private static int hash(Object key) {
+		int h = key.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	private static int bitpos(int hash, int shift) {
+		return 1 << ((hash >>> shift) & MASK);
+	}
+
+	private static boolean equal(Object key, Object k) {
+		return key == k || key.equals(k);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		if (root == null)
+			return null;
+		Object value = root.find(0, hash(key), key);
+		return value == NOT_FOUND ? null : (V) value;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return root != null && root.find(0, hash(key), key) != NOT_FOUND;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V put(K key, V value) {
+		Objects.requireNonNull(key);
+		Box box = new Box();
+		Node node = root == null ? new BitmapNode(edit, 0, new Object[2 * GROWTH]) : root;
+		root = node.put(edit, 0, hash(key), key, value, box);
+		if (box.changed) {
+			size++;
+			modCount++;
+		}
+		return (V) box.old;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V remove(Object key) {
+		if (root == null || key == null)
+			return null;
+		Box box = new Box();
+		root = root.remove(edit, 0, hash(key), key, box);
+		if (box.changed) {
+			size--;
+			modCount++;
+		}
+		return (V) box.old;
+	}
+
+	@Override
+	public void clear() {
+		if (size > 0)
+			modCount++;
+		root = null;
+		size = 0;
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		if (entrySet == null) {
+			entrySet = new AbstractSet<Map.Entry<K, V>>() {
+
+				@Override
+				public Iterator<Map.Entry<K, V>> iterator() {
+					return new NodeIterator<Map.Entry<K, V>>() {
+						@Override
+						@SuppressWarnings("unchecked")
+						Map.Entry<K, V> element(Object key, Object value) {
+							return new AbstractMap.SimpleImmutableEntry<>((K) key, (V) value);
+						}
+					};
+				}
+
+				@Override
+				public boolean contains(Object o) {
+					if (!(o instanceof Map.Entry) || root == null)
+						return false;
+					Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+					if (entry.getKey() == null)
+						return false;
+					Object value = root.find(0, hash(entry.getKey()), entry.getKey());
+					return value != NOT_FOUND && Objects.equals(value, entry.getValue());
+				}
+
+				@Override
+				public int size() {
+					return size;
+				}
+
+				@Override
+				public void clear() {
+					SnapshotHashMap.this.clear();
+				}
+			};
+		}
+		return entrySet;
+	}
+
+	@Override
+	public Set<K> keySet() {
+		if (keySet == null) {
+			keySet = new AbstractSet<K>() {
+
+				@Override
+				public Iterator<K> iterator() {
+					return keyIterator();
+				}
+
+				@Override
+				public boolean contains(Object o) {
+					return o != null && containsKey(o);
+				}
+
+				@Override
+				public boolean remove(Object o) {
+					if (!contains(o))
+						return false;
+					SnapshotHashMap.this.remove(o);
+					return true;
+				}
+
+				@Override
+				public int size() {
+					return size;
+				}
+
+				@Override
+				public void clear() {
+					SnapshotHashMap.this.clear();
+				}
+			};
+		}
+		return keySet;
+	}
+
+	/**
+	 * iterates the keys without allocating an entry per key
+	 */
+	Iterator<K> keyIterator() {
+		return new NodeIterator<K>() {
+			@Override
+			@SuppressWarnings("unchecked")
+			K element(Object key, Object value) {
+				return (K) key;
+			}
+		};
+	}
+
+	/**
+	 * result of a put/remove: whether the number of entries changed and the previous value
+	 */
+	private static final class Box {
+		boolean changed;
+		Object old;
+	}
+
+	private static abstract class Node {
+		// owner of this node, the map which may modify it in place
+		final Object edit;
+
+		Node(Object edit) {
+			this.edit = edit;
+		}
+
+		/**
+		 * returns the value mapped to from the key, or NOT_FOUND
+		 */
+		abstract Object find(int shift, int hash, Object key);
+
+		abstract Node put(Object edit, int shift, int hash, Object key, Object value, Box box);
+
+		/**
+		 * returns the node without the key, null if empty
+		 */
+		abstract Node remove(Object edit, int shift, int hash, Object key, Box box);
+
+		/**
+		 * the slots in use: key, value pairs (a null key meaning the value is a child node)
+		 */
+		abstract Object[] array();
+
+		abstract int length();
+	}
+
+	private static final class BitmapNode extends Node {
+		int bitmap;
+		Object[] array;
+
+		BitmapNode(Object edit, int bitmap, Object[] array) {
+			super(edit);
+			this.bitmap = bitmap;
+			this.array = array;
+		}
+
+		private int index(int bit) {
+			return Integer.bitCount(bitmap & (bit - 1));
+		}
+
+		@Override
+		Object[] array() {
+			return array;
+		}
+
+		@Override
+		int length() {
+			return 2 * Integer.bitCount(bitmap);
+		}
+
+		@Override
+		Object find(int shift, int hash, Object key) {
+			int bit = bitpos(hash, shift);
+			if ((bitmap & bit) == 0)
+				return NOT_FOUND;
+			int i = 2 * index(bit);
+			Object k = array[i];
+			if (k == null)
+				return ((Node) array[i + 1]).find(shift + BITS, hash, key);
+			if (equal(key, k))
+				return array[i + 1];
+			return NOT_FOUND;
+		}
+
+		/**
+		 * returns this node, if owned by the given editor, or a copy owned by it
+		 */
+		private BitmapNode editable(Object edit) {
+			if (this.edit == edit)
+				return this;
+			return new BitmapNode(edit, bitmap, Arrays.copyOf(array, length()));
+		}
+
+		@Override
+		Node put(Object edit, int shift, int hash, Object key, Object value, Box box) {
+			int bit = bitpos(hash, shift);
+			int i = 2 * index(bit);
+			if ((bitmap & bit) != 0) {
+				Object k = array[i];
+				Object v = array[i + 1];
+				if (k == null) {
+					Node child = ((Node) v).put(edit, shift + BITS, hash, key, value, box);
+					if (child == v)
+						return this;
+					BitmapNode node = editable(edit);
+					node.array[i + 1] = child;
+					return node;
+				}
+				if (equal(key, k)) {
+					box.old = v;
+					if (v == value)
+						return this;
+					BitmapNode node = editable(edit);
+					node.array[i + 1] = value;
+					return node;
+				}
+				// two keys in the same slot, push both down
+				box.changed = true;
+				Node child = createNode(edit, shift + BITS, k, v, hash, key, value);
+				BitmapNode node = editable(edit);
+				node.array[i] = null;
+				node.array[i + 1] = child;
+				return node;
+			}
+			box.changed = true;
+			int length = length();
+			if (this.edit == edit && length + 2 <= array.length) {
+				System.arraycopy(array, i, array, i + 2, length - i);
+				array[i] = key;
+				array[i + 1] = value;
+				bitmap |= bit;
+				return this;
+			}
+			// owned nodes grow with some slack, shared ones are copied exactly
+			Object[] newArray = new Object[this.edit == edit ? length + 2 * GROWTH : length + 2];
+			System.arraycopy(array, 0, newArray, 0, i);
+			newArray[i] = key;
+			newArray[i + 1] = value;
+			System.arraycopy(array, i, newArray, i + 2, length - i);
+			if (this.edit == edit) {
+				array = newArray;
+				bitmap |= bit;
+				return this;
+			}
+			return new BitmapNode(edit, bitmap | bit, newArray);
+		}
+
+		@Override
+		Node remove(Object edit, int shift, int hash, Object key, Box box) {
+			int bit = bitpos(hash, shift);
+			if ((bitmap & bit) == 0)
+				return this;
+			int i = 2 * index(bit);
+			Object k = array[i];
+			Object v = array[i + 1];
+			if (k == null) {
+				Node child = ((Node) v).remove(edit, shift + BITS, hash, key, box);
+				if (child == v)
+					return this;
+				if (child != null) {
+					BitmapNode node = editable(edit);
+					node.array[i + 1] = child;
+					return node;
+				}
+			} else if (equal(key, k)) {
+				box.changed = true;
+				box.old = v;
+			} else {
+				return this;
+			}
+			// the slot becomes empty
+			if (bitmap == bit)
+				return null;
+			int length = length();
+			if (this.edit == edit) {
+				System.arraycopy(array, i + 2, array, i, length - i - 2);
+				array[length - 2] = null;
+				array[length - 1] = null;
+				bitmap ^= bit;
+				return this;
+			}
+			Object[] newArray = new Object[length - 2];
+			System.arraycopy(array, 0, newArray, 0, i);
+			System.arraycopy(array, i + 2, newArray, i, length - i - 2);
+			return new BitmapNode(edit, bitmap ^ bit, newArray);
+		}
+	}
+
+	/**
+	 * keys with the same (full) hash
+	 */
+	private static final class CollisionNode extends Node {
+		final int hash;
+		Object[] array;
+
+		CollisionNode(Object edit, int hash, Object[] array) {
+			super(edit);
+			this.hash = hash;
+			this.array = array;
+		}
+
+		@Override
+		Object[] array() {
+			return array;
+		}
+
+		@Override
+		int length() {
+			return array.length;
+		}
+
+		private int indexOf(Object key) {
+			for (int i = 0; i < array.length; i += 2) {
+				if (equal(key, array[i]))
+					return i;
+			}
+			return -1;
+		}
+
+		@Override
+		Object find(int shift, int hash, Object key) {
+			if (hash != this.hash)
+				return NOT_FOUND;
+			int i = indexOf(key);
+			return i < 0 ? NOT_FOUND : array[i + 1];
+		}
+
+		@Override
+		Node put(Object edit, int shift, int hash, Object key, Object value, Box box) {
+			if (hash != this.hash) {
+				// nest this node in a bitmap node, where the new key gets its own slot
+				BitmapNode parent = new BitmapNode(edit, bitpos(this.hash, shift), new Object[] { null, this });
+				return parent.put(edit, shift, hash, key, value, box);
+			}
+			int i = indexOf(key);
+			if (i >= 0) {
+				box.old = array[i + 1];
+				if (array[i + 1] == value)
+					return this;
+				Object[] newArray = this.edit == edit ? array : array.clone();
+				newArray[i + 1] = value;
+				return this.edit == edit ? this : new CollisionNode(edit, hash, newArray);
+			}
+			box.changed = true;
+			Object[] newArray = Arrays.copyOf(array, array.length + 2);
+			newArray[array.length] = key;
+			newArray[array.length + 1] = value;
+			if (this.edit == edit) {
+				array = newArray;
+				return this;
+			}
+			return new CollisionNode(edit, hash, newArray);
+		}
+
+		@Override
+		Node remove(Object edit, int shift, int hash, Object key, Box box) {
+			if (hash != this.hash)
+				return this;
+			int i = indexOf(key);
+			if (i < 0)
+				return this;
+			box.changed = true;
+			box.old = array[i + 1];
+			if (array.length == 2)
+				return null;
+			Object[] newArray = new Object[array.length - 2];
+			System.arraycopy(array, 0, newArray, 0, i);
+			System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+			if (this.edit == edit) {
+				array = newArray;
+				return this;
+			}
+			return new CollisionNode(edit, hash, newArray);
+		}
+	}
+
+	private static Node createNode(Object edit, int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+		int hash1 = hash(key1);
+		if (hash1 == hash2)
+			return new CollisionNode(edit, hash1, new Object[] { key1, value1, key2, value2 });
+		Box box = new Box();
+		Node node = new BitmapNode(edit, 0, new Object[4]);
+		node = node.put(edit, shift, hash1, key1, value1, box);
+		return node.put(edit, shift, hash2, key2, value2, box);
+	}
+
+	/**
+	 * depth first traversal of the trie. Removing through the iterator makes this map stop modifying its current nodes in place, so the traversal is not
+	 * disturbed.
+	 */
+	private abstract class NodeIterator<T> implements Iterator<T> {
+		// at most 7 levels of nodes plus a collision node
+		private final Object[][] arrays = new Object[8][];
+		private final int[] positions = new int[8];
+		private final int[] lengths = new int[8];
+		private int depth = -1;
+		private Object nextKey;
+		private Object nextValue;
+		private Object lastKey = NOT_FOUND;
+		private int expectedModCount = modCount;
+
+		NodeIterator() {
+			if (root != null)
+				push(root);
+			advance();
+		}
+
+		abstract T element(Object key, Object value);
+
+		private void push(Node node) {
+			depth++;
+			arrays[depth] = node.array();
+			positions[depth] = 0;
+			lengths[depth] = node.length();
+		}
+
+		/**
+		 * finds the next key, value pair (nextKey is NOT_FOUND at the end)
+		 */
+		private void advance() {
+			while (depth >= 0) {
+				if (positions[depth] >= lengths[depth]) {
+					arrays[depth] = null;
+					depth--;
+					continue;
+				}
+				Object[] array = arrays[depth];
+				int i = positions[depth];
+				positions[depth] = i + 2;
+				if (array[i] == null) {
+					push((Node) array[i + 1]);
+				} else {
+					nextKey = array[i];
+					nextValue = array[i + 1];
+					return;
+				}
+			}
+			nextKey = NOT_FOUND;
+			nextValue = null;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return nextKey != NOT_FOUND;
+		}
+
+		@Override
+		public T next() {
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			if (nextKey == NOT_FOUND)
+				throw new NoSuchElementException();
+			T element = element(nextKey, nextValue);
+			lastKey = nextKey;
+			advance();
+			return element;
+		}
+
+		@Override
+		public void remove() {
+			if (lastKey == NOT_FOUND)
+				throw new IllegalStateException();
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			// copy the path instead of shifting the arrays being traversed
+			edit = new Object();
+			SnapshotHashMap.this.remove(lastKey);
+			lastKey = NOT_FOUND;
+			expectedModCount = modCount;
+		}
+	}
+
+}
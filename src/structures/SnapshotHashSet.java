@@ -0,0 +1,77 @@
+package structures;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * A hash set with an O(1) snapshot(), backed by a SnapshotHashMap: the set and its snapshots share their storage, which is copied only along the path to
+ * each modified element. Null elements are not supported.
+ *
+ * @author jcfgonc@gmail.com
+ * @param <E>
+ */
+public class SnapshotHashSet<E> extends AbstractSet<E> implements Serializable {
+	private static final long serialVersionUID = -4276114325609825532L;
+	private static final Object PRESENT = Boolean.TRUE;
+	private final SnapshotHashMap<E, Object> map;
+
+	public SnapshotHashSet() {
+		map = new SnapshotHashMap<>();
+	}
+
+	public SnapshotHashSet(Collection<? extends E> elements) {
+		this();
+		addAll(elements);
+	}
+
+	private SnapshotHashSet(SnapshotHashMap<E, Object> map) {
+		this.map = map;
+	}
+
+	/**
+	 * Returns a copy of this set in O(1), see SnapshotHashMap.snapshot().
+	 *
+	 * @return
+	 */
+	public SnapshotHashSet<E> snapshot() {
+		return new SnapshotHashSet<>(map.snapshot());
+	}
+
+	@Override
+	public boolean add(E e) {
+		return map.put(e, PRESENT) == null;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		return o != null && map.remove(o) != null;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return o != null && map.containsKey(o);
+	}
+
+	@Override
+	public int size() {
+		return map.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return map.isEmpty();
+	}
+
+	@Override
+	public void clear() {
+		map.clear();
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return map.keyIterator();
+	}
+
+}
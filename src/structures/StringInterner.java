@@ -0,0 +1,138 @@
+package structures;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.WeakHashMap;
+
+/**
+ * A thread-safe dictionary of canonical String instances, similar to String.intern() but local and shareable by multiple graphs. Strings with the same
+ * contents interned in the same dictionary become the same instance, saving memory and allowing equality to be tested by reference. The dictionary holds its
+ * strings weakly: a canonical string is evicted once nothing else (no graph sharing the dictionary) references it, so short-lived graphs sharing the
+ * dictionary of a long-lived one do not make it grow without bound. The dictionary is split in segments, each locked independently.
+ *
+ * @author jcfgonc@gmail.com
+ */
+public class StringInterner implements Serializable {
+	private static final long serialVersionUID = -3177810693424106187L;
+	private static final int NUMBER_OF_SEGMENTS = 64;
+	// canonical string -> weak reference to itself (a strong value would keep the weak key alive)
+	private transient ArrayList<WeakHashMap<String, WeakReference<String>>> segments;
+
+	public StringInterner() {
+		this(1 << 10);
+	}
+
+	public StringInterner(int initialCapacity) {
+		createSegments(initialCapacity);
+	}
+
+	private void createSegments(int initialCapacity) {
+		segments = new ArrayList<>(NUMBER_OF_SEGMENTS);
+		int segmentCapacity = Math.max(16, initialCapacity / NUMBER_OF_SEGMENTS);
+		for (int i = 0; i < NUMBER_OF_SEGMENTS; i++) {
+			segments.add(new WeakHashMap<>(segmentCapacity));
+		}
+	}
+
+	private WeakHashMap<String, WeakReference<String>> segmentOf(String s) {
+		int h = s.hashCode();
+		h ^= h >>> 16;
+		return segments.get(h & (NUMBER_OF_SEGMENTS - 1));
+	}
+
+	/**
+	 * returns the canonical instance of the given string, adding it to the dictionary if not there yet
+	 *
+	 * @param s
+	 * @return
+	 */
+	public String intern(String s) {
+		WeakHashMap<String, WeakReference<String>> segment = segmentOf(s);
+		synchronized (segment) {
+			WeakReference<String> reference = segment.get(s);
+			if (reference != null) {
+				String canonical = reference.get();
+				if (canonical != null)
+					return canonical;
+			}
+			segment.put(s, new WeakReference<>(s));
+			return s;
+		}
+	}
+
+	public boolean contains(String s) {
+		WeakHashMap<String, WeakReference<String>> segment = segmentOf(s);
+		synchronized (segment) {
+			return segment.containsKey(s);
+		}
+	}
+
+	/**
+	 * number of canonical strings in the dictionary (not yet evicted)
+	 *
+	 * @return
+	 */
+	public int size() {
+		int size = 0;
+		for (WeakHashMap<String, WeakReference<String>> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * approximate number of characters held by the dictionary
+	 *
+	 * @return
+	 */
+	public long numberOfCharacters() {
+		long chars = 0;
+		for (WeakHashMap<String, WeakReference<String>> segment : segments) {
+			synchronized (segment) {
+				for (String s : segment.keySet()) {
+					chars += s.length();
+				}
+			}
+		}
+		return chars;
+	}
+
+	public void clear() {
+		for (WeakHashMap<String, WeakReference<String>> segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * writes the canonical strings, so that they stay the same instances as the strings of the graphs serialized in the same stream
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		ArrayList<String> strings = new ArrayList<>();
+		for (WeakHashMap<String, WeakReference<String>> segment : segments) {
+			synchronized (segment) {
+				strings.addAll(segment.keySet());
+			}
+		}
+		out.writeObject(strings);
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		@SuppressWarnings("unchecked")
+		ArrayList<String> strings = (ArrayList<String>) in.readObject();
+		createSegments(strings.size());
+		for (String s : strings) {
+			intern(s);
+		}
+	}
+
+}
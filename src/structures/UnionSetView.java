@@ -0,0 +1,95 @@
+package structures;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An unmodifiable, allocation-free view of the union of two sets. Nothing is copied: the view reflects later changes of the backing sets. Elements of the
+ * second set also present in the first are skipped, so iteration never repeats an element. When the sets are known to be disjoint, size() is O(1).
+ *
+ * @author jcfgonc@gmail.com
+ * @param <E>
+ */
+public class UnionSetView<E> extends AbstractSet<E> {
+	private final Set<E> first;
+	private final Set<E> second;
+	private final boolean disjoint;
+
+	/**
+	 * @param first
+	 * @param second
+	 * @param disjoint true if the caller guarantees that both sets never share elements
+	 */
+	public UnionSetView(Set<E> first, Set<E> second, boolean disjoint) {
+		this.first = first;
+		this.second = second;
+		this.disjoint = disjoint;
+	}
+
+	public UnionSetView(Set<E> first, Set<E> second) {
+		this(first, second, false);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return first.contains(o) || second.contains(o);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return first.isEmpty() && second.isEmpty();
+	}
+
+	@Override
+	public int size() {
+		if (disjoint)
+			return first.size() + second.size();
+		int size = first.size();
+		for (E e : second) {
+			if (!first.contains(e))
+				size++;
+		}
+		return size;
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+			private Iterator<E> current = first.iterator();
+			private boolean inSecond = false;
+			private E next = advance();
+
+			private E advance() {
+				while (true) {
+					if (current.hasNext()) {
+						E e = current.next();
+						if (inSecond && !disjoint && first.contains(e))
+							continue;
+						return e;
+					}
+					if (inSecond)
+						return null;
+					current = second.iterator();
+					inSecond = true;
+				}
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public E next() {
+				if (next == null)
+					throw new NoSuchElementException();
+				E e = next;
+				next = advance();
+				return e;
+			}
+		};
+	}
+
+}
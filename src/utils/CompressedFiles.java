@@ -0,0 +1,328 @@
+package utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Transparent access to gzip (.gz) and zip (.zip, the first file entry) compressed files, given by their extension. The (de)compression runs in its own
+ * thread, exchanging chunks of bytes with the reader/writer through a bounded queue, so that parsing/formatting and (de)compression overlap. Files without
+ * those extensions are accessed directly.
+ *
+ * @author jcfgonc@gmail.com
+ */
+public class CompressedFiles {
+	private static final int CHUNK_SIZE = 1 << 20;
+	// chunks queued between the threads
+	private static final int QUEUE_SIZE = 16;
+	private static final int FILE_BUFFER_SIZE = 1 << 16;
+	// marks the end of the stream in the queue
+	private static final byte[] END = new byte[0];
+
+	/**
+	 * Returns true if the file is gzip or zip compressed (by its extension).
+	 *
+	 * @param filename
+	 * @return
+	 */
+	public static boolean isCompressed(String filename) {
+		String lower = filename.toLowerCase();
+		return lower.endsWith(".gz") || lower.endsWith(".zip");
+	}
+
+	/**
+	 * Returns the filename without the compression extension, for instance kb.csv.gz becomes kb.csv.
+	 *
+	 * @param filename
+	 * @return
+	 */
+	public static String getUncompressedName(String filename) {
+		if (!isCompressed(filename))
+			return filename;
+		return filename.substring(0, filename.lastIndexOf('.'));
+	}
+
+	/**
+	 * Returns the (lower case) extension of the file's content, for instance csv for both kb.csv and kb.csv.gz.
+	 *
+	 * @param filename
+	 * @return
+	 */
+	public static String getExtension(String filename) {
+		String name = Paths.get(getUncompressedName(filename)).getFileName().toString();
+		return name.substring(name.lastIndexOf('.') + 1).toLowerCase();
+	}
+
+	public static InputStream newInputStream(String filename) throws IOException {
+		InputStream file = new BufferedInputStream(Files.newInputStream(Paths.get(filename)), FILE_BUFFER_SIZE);
+		String lower = filename.toLowerCase();
+		try {
+			if (lower.endsWith(".gz"))
+				return new DecompressingInputStream(new GZIPInputStream(file, FILE_BUFFER_SIZE));
+			if (lower.endsWith(".zip")) {
+				ZipInputStream zip = new ZipInputStream(file, StandardCharsets.UTF_8);
+				ZipEntry entry;
+				while ((entry = zip.getNextEntry()) != null && entry.isDirectory()) {
+				}
+				if (entry == null)
+					throw new IOException("empty zip file: " + filename);
+				return new DecompressingInputStream(zip);
+			}
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+		return file;
+	}
+
+	public static OutputStream newOutputStream(String filename) throws IOException {
+		Path path = Paths.get(filename);
+		OutputStream file = new BufferedOutputStream(Files.newOutputStream(path), FILE_BUFFER_SIZE);
+		String lower = filename.toLowerCase();
+		if (lower.endsWith(".gz"))
+			return new CompressingOutputStream(new GZIPOutputStream(file, FILE_BUFFER_SIZE));
+		if (lower.endsWith(".zip")) {
+			ZipOutputStream zip = new ZipOutputStream(file, StandardCharsets.UTF_8);
+			zip.putNextEntry(new ZipEntry(getUncompressedName(path.getFileName().toString())));
+			return new CompressingOutputStream(zip);
+		}
+		return file;
+	}
+
+	public static BufferedReader newBufferedReader(String filename) throws IOException {
+		return new BufferedReader(new InputStreamReader(newInputStream(filename), StandardCharsets.UTF_8), FILE_BUFFER_SIZE);
+	}
+
+	public static BufferedWriter newBufferedWriter(String filename) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(newOutputStream(filename), StandardCharsets.UTF_8), FILE_BUFFER_SIZE);
+	}
+
+	/**
+	 * Reads the decompressed chunks queued by a background thread.
+	 */
+	private static class DecompressingInputStream extends InputStream {
+		private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(QUEUE_SIZE);
+		private final InputStream source;
+		private final Thread decompressor;
+		private volatile IOException error;
+		private byte[] chunk = new byte[0];
+		private int position = 0;
+		private boolean ended = false;
+
+		DecompressingInputStream(InputStream source) {
+			this.source = source;
+			this.decompressor = new Thread(this::decompress, "decompressor");
+			decompressor.setDaemon(true);
+			decompressor.start();
+		}
+
+		private void decompress() {
+			try {
+				while (true) {
+					byte[] buffer = new byte[CHUNK_SIZE];
+					int read = source.readNBytes(buffer, 0, CHUNK_SIZE);
+					if (read == 0)
+						break;
+					chunks.put(read == CHUNK_SIZE ? buffer : Arrays.copyOf(buffer, read));
+				}
+			} catch (IOException e) {
+				error = e;
+			} catch (InterruptedException e) {
+				// closed by the reader
+				return;
+			}
+			try {
+				chunks.put(END);
+			} catch (InterruptedException e) {
+			}
+		}
+
+		/**
+		 * makes the current chunk have unread bytes, returning false at the end of the stream
+		 */
+		private boolean nextChunk() throws IOException {
+			while (position == chunk.length) {
+				if (ended)
+					return false;
+				try {
+					chunk = chunks.take();
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+				position = 0;
+				if (chunk == END) {
+					ended = true;
+					if (error != null)
+						throw error;
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!nextChunk())
+				return -1;
+			return chunk[position++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+			if (!nextChunk())
+				return -1;
+			int amount = Math.min(len, chunk.length - position);
+			System.arraycopy(chunk, position, b, off, amount);
+			position += amount;
+			return amount;
+		}
+
+		@Override
+		public int available() {
+			return chunk.length - position;
+		}
+
+		@Override
+		public void close() throws IOException {
+			decompressor.interrupt();
+			try {
+				decompressor.join();
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			} finally {
+				source.close();
+			}
+		}
+	}
+
+	/**
+	 * Queues chunks of bytes to be compressed by a background thread.
+	 */
+	private static class CompressingOutputStream extends OutputStream {
+		private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(QUEUE_SIZE);
+		private final OutputStream destination;
+		private final Thread compressor;
+		private volatile IOException error;
+		private byte[] chunk = new byte[CHUNK_SIZE];
+		private int size = 0;
+		private boolean closed = false;
+
+		CompressingOutputStream(OutputStream destination) {
+			this.destination = destination;
+			this.compressor = new Thread(this::compress, "compressor");
+			compressor.setDaemon(true);
+			compressor.start();
+		}
+
+		private void compress() {
+			try {
+				while (true) {
+					byte[] bytes = chunks.take();
+					if (bytes == END)
+						break;
+					if (error != null)
+						// keep consuming so that the writer never blocks
+						continue;
+					try {
+						destination.write(bytes);
+					} catch (IOException e) {
+						error = e;
+						// release the file now, the writer may never close this stream
+						closeDestination();
+					}
+				}
+			} catch (InterruptedException e) {
+			} finally {
+				closeDestination();
+			}
+		}
+
+		/**
+		 * writes the compression trailer (if there was no error) and releases the file
+		 */
+		private void closeDestination() {
+			try {
+				destination.close();
+			} catch (IOException e) {
+				if (error == null)
+					error = e;
+			}
+		}
+
+		private void queue(byte[] bytes) throws IOException {
+			if (error != null)
+				throw error;
+			try {
+				chunks.put(bytes);
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			}
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (size == chunk.length) {
+				queue(chunk);
+				chunk = new byte[CHUNK_SIZE];
+				size = 0;
+			}
+			chunk[size++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (size == chunk.length) {
+					queue(chunk);
+					chunk = new byte[CHUNK_SIZE];
+					size = 0;
+				}
+				int amount = Math.min(len, chunk.length - size);
+				System.arraycopy(b, off, chunk, size, amount);
+				size += amount;
+				off += amount;
+				len -= amount;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed)
+				return;
+			closed = true;
+			if (size > 0)
+				queue(Arrays.copyOf(chunk, size));
+			chunk = null;
+			try {
+				chunks.put(END);
+				compressor.join();
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			}
+			if (error != null)
+				throw error;
+		}
+	}
+
+}
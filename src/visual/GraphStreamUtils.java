@@ -10,6 +10,7 @@ import org.graphstream.graph.Edge;
 import org.graphstream.graph.Node;
 import org.graphstream.graph.implementations.MultiGraph;
 
+import graph.GraphDelta;
 import graph.StringEdge;
 import graph.StringGraph;
 
@@ -132,4 +133,22 @@ public class GraphStreamUtils {
 		return !addedEdges.isEmpty() || !removedEdges.isEmpty();
 	}
 
+	/**
+	 * updates the multigraph with the changes made to the given graph since the given version, using the graph's change log
+	 * 
+	 * @param multiGraph
+	 * @param stringGraph
+	 * @param version     version of stringGraph last shown in the multigraph
+	 * @return the changes applied or null if the graph's change log does not hold them (the whole graphs must be compared with the other
+	 *         detectChangesVisualGraph())
+	 */
+	public static GraphDelta detectChangesVisualGraph(MultiGraph multiGraph, StringGraph stringGraph, long version) {
+		GraphDelta delta = stringGraph.changesSince(version);
+		if (delta == null)
+			return null;
+		removeEdgesFromVisualGraph(multiGraph, delta.getRemovedEdges());
+		addEdgesToGraph(multiGraph, delta.getAddedEdges());
+		return delta;
+	}
+
 }